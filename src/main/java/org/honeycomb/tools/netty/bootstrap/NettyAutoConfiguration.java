@@ -1,10 +1,13 @@
 package org.honeycomb.tools.netty.bootstrap;
 import io.netty.bootstrap.Bootstrap;
+import org.honeycomb.tools.netty.executor.ServletExecutionStrategy;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.AutoConfigureOrder;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.boot.autoconfigure.condition.SearchStrategy;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.boot.web.servlet.server.ServletWebServerFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -18,6 +21,7 @@ import org.springframework.core.Ordered;
 @AutoConfigureOrder(Ordered.HIGHEST_PRECEDENCE)
 @Configuration
 @ConditionalOnWebApplication // 在Web环境下才会起作用
+@EnableConfigurationProperties(NettyServerProperties.class)
 public class NettyAutoConfiguration {
     @Configuration
     @ConditionalOnClass({Bootstrap.class}) // Netty的Bootstrap类必须在classloader中存在，才能启动Netty容器
@@ -25,8 +29,10 @@ public class NettyAutoConfiguration {
     public static class EmbeddedNetty {
         //上述条件注解成立的话就会构造EmbeddedNettyFactory这个EmbeddedServletContainerFactory
         @Bean
-        public NettyFactory embeddedNettyFactory() {
-            return new NettyFactory();
+        public NettyFactory embeddedNettyFactory(NettyServerProperties properties, ObjectProvider<ServletExecutionStrategy> executionStrategy) {
+            NettyFactory factory = new NettyFactory(properties);
+            factory.setServletExecutionStrategy(executionStrategy.getIfAvailable()); //用户自定义的执行策略优先于配置
+            return factory;
         }
     }
 }
@@ -4,6 +4,9 @@ import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.unix.DomainSocketAddress;
 import org.honeycomb.tools.netty.core.NettyContainer;
 import org.honeycomb.tools.netty.core.NettyContext;
+import org.honeycomb.tools.netty.core.NettyListener;
+import org.honeycomb.tools.netty.executor.ServletExecutionStrategy;
+import org.honeycomb.tools.netty.resource.ResourceCache;
 import org.honeycomb.tools.netty.utils.GsonUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -21,6 +24,8 @@ import java.io.File;
 import java.net.InetSocketAddress;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 
@@ -36,6 +41,12 @@ public class NettyFactory extends AbstractServletWebServerFactory implements Res
     private final Logger log = LoggerFactory.getLogger(getClass());
     private static final String SERVER_INFO = "Netty@SpringBoot";
     private ResourceLoader resourceLoader;
+    private final NettyServerProperties properties;
+    private ServletExecutionStrategy servletExecutionStrategy;
+
+    public NettyFactory(NettyServerProperties properties) {
+        this.properties = properties;
+    }
 
     @Override
     public WebServer getWebServer(ServletContextInitializer... initializers) {
@@ -50,7 +61,10 @@ public class NettyFactory extends AbstractServletWebServerFactory implements Res
             log.warn("This container does not support a default servlet");
         }
         //上下文
-        NettyContext context = new NettyContext(getContextPath(), new URLClassLoader(new URL[]{}, parentClassLoader), SERVER_INFO);
+        NettyServerProperties.ResourceCache cache = properties.getResourceCache();
+        ResourceCache resourceCache = new ResourceCache(cache.getMaxEntries(), cache.getMaxSize(), cache.getMaxResourceSize(), cache.isCheckModified());
+        NettyContext context = new NettyContext(getContextPath(), new URLClassLoader(new URL[]{}, parentClassLoader), SERVER_INFO, resourceCache,
+                properties.getDispatcherCacheSize());
         for (ServletContextInitializer initializer : initializers) {
             try {
                 initializer.onStartup(context);
@@ -58,19 +72,40 @@ public class NettyFactory extends AbstractServletWebServerFactory implements Res
                 throw new RuntimeException(e);
             }
         }
-        String address = getSockAddress();
+        //server.port.enable决定默认只监听TCP端口还是只监听domain socket，server.netty.tcp/domain-socket.enabled可分别覆盖
         int port = getPort();
-        InetSocketAddress ipAddress = null;
-        if (port > 0 && !StringUtils.isEmpty(portEnable) && Boolean.valueOf(portEnable)) {
-            ipAddress = new InetSocketAddress(port);
-            log.info("Server initialized with portEnable:{} port:{} ",portEnable,port);
-        }else{
+        boolean portEnabled = port > 0 && !StringUtils.isEmpty(portEnable) && Boolean.valueOf(portEnable);
+        boolean tcpEnabled = isEnabled(properties.getTcp(), portEnabled) && port >= 0;
+        boolean domainSocketEnabled = isEnabled(properties.getDomainSocket(), !portEnabled);
+
+        List<NettyListener> listeners = new ArrayList<>();
+        if (domainSocketEnabled) {
+            String address = getSockAddress();
+            listeners.add(NettyListener.domainSocket(new DomainSocketAddress(address), getCodec(properties.getDomainSocket())));
             log.info("Server initialized with address: " + address);
         }
-        return new NettyContainer(new DomainSocketAddress(address), ipAddress, context);
+        if (tcpEnabled) {
+            listeners.add(NettyListener.tcp(new InetSocketAddress(port), getCodec(properties.getTcp())));
+            log.info("Server initialized with portEnable:{} port:{} ", portEnable, port);
+        }
+        if (listeners.isEmpty()) {
+            throw new IllegalStateException("Neither tcp port nor domain socket is enabled");
+        }
+        NettyContainer container = new NettyContainer(listeners, context, properties);
+        container.setServletExecutionStrategy(servletExecutionStrategy);
+        container.setCompression(getCompression());
+        return container;
     }
 
 
+    private boolean isEnabled(NettyServerProperties.Listener listener, boolean defaultEnabled) {
+        return listener.getEnabled() != null ? listener.getEnabled() : defaultEnabled;
+    }
+
+    private NettyServerProperties.Codec getCodec(NettyServerProperties.Listener listener) {
+        return listener.getCodec() != null ? listener.getCodec() : properties.getCodec();
+    }
+
     private String getSockAddress() {
         Map<String, String> env = System.getenv();
         String envHcConfig = env.get("HC_APP_CONFIG");
@@ -84,6 +119,13 @@ public class NettyFactory extends AbstractServletWebServerFactory implements Res
         return jsonObject.get("targetSock").toString();
     }
 
+    /**
+     * @param servletExecutionStrategy 自定义的Servlet执行策略，为null时按配置创建
+     */
+    public void setServletExecutionStrategy(ServletExecutionStrategy servletExecutionStrategy) {
+        this.servletExecutionStrategy = servletExecutionStrategy;
+    }
+
     @Override
     public void setResourceLoader(ResourceLoader resourceLoader) {
         this.resourceLoader = resourceLoader;
@@ -0,0 +1,797 @@
+package org.honeycomb.tools.netty.bootstrap;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Netty容器的可配置项，对应配置文件中server.netty前缀
+ * <p>
+ * User: luluful
+ * Date: 10/18/26
+ */
+@ConfigurationProperties(prefix = "server.netty")
+public class NettyServerProperties {
+
+    /**
+     * 接收连接的boss线程数
+     */
+    private int bossThreads = 1;
+
+    /**
+     * 处理IO的worker线程数，0表示使用Netty默认值（CPU核数*2）
+     */
+    private int workerThreads = 0;
+
+    /**
+     * 通过SO_REUSEPORT绑定在同一端口上的监听channel数，由内核把新连接分散到各个acceptor，
+     * 只在Linux epoll的TCP监听下生效
+     */
+    private int acceptors = 1;
+
+    /**
+     * 监听socket的SO_BACKLOG
+     */
+    private int backlog = 100;
+
+    /**
+     * 监听socket的SO_REUSEADDR
+     */
+    private boolean reuseAddress = true;
+
+    /**
+     * 连接的TCP_NODELAY，只对TCP监听生效
+     */
+    private boolean tcpNoDelay = true;
+
+    /**
+     * 连接的SO_KEEPALIVE，只对TCP监听生效，不设置则使用系统默认值
+     */
+    private Boolean soKeepAlive;
+
+    /**
+     * 连接的SO_RCVBUF，不设置则使用系统默认值
+     */
+    private Integer receiveBufferSize;
+
+    /**
+     * 连接的SO_SNDBUF，不设置则使用系统默认值
+     */
+    private Integer sendBufferSize;
+
+    /**
+     * 连接出站缓冲的低水位（字节），缓冲降到低水位以下时连接恢复可写
+     */
+    private int writeBufferLowWaterMark = 32 * 1024;
+
+    /**
+     * 连接出站缓冲的高水位（字节），超过后写响应的Servlet线程阻塞等待
+     */
+    private int writeBufferHighWaterMark = 64 * 1024;
+
+    /**
+     * 连接上排队未读的请求体字节数的低水位，Servlet读到低水位以下时恢复读取连接
+     */
+    private int readBufferLowWaterMark = 32 * 1024;
+
+    /**
+     * 连接上排队未读的请求体字节数的高水位，超过后暂停读取连接（关闭autoRead）
+     */
+    private int readBufferHighWaterMark = 64 * 1024;
+
+    /**
+     * 等待客户端请求体数据的最长时间：Servlet阻塞读取超时抛出SocketTimeoutException，
+     * 请求体两次到达的间隔超过该时间则关闭连接（因背压暂停读取期间不计），为0时不限制
+     */
+    private Duration readTimeout = Duration.ofSeconds(30);
+
+    /**
+     * 写响应时等待连接恢复可写的最长时间，超时后关闭连接
+     */
+    private Duration writeTimeout = Duration.ofSeconds(30);
+
+    /**
+     * keep-alive连接上没有请求时保持的最长时间，为0时不限制
+     */
+    private Duration idleTimeout = Duration.ofSeconds(60);
+
+    /**
+     * 从收到请求的第一个字节到请求头完整到达的最长时间，为0时不限制，防止慢速发送请求头的连接长期占用资源
+     */
+    private Duration requestHeaderTimeout = Duration.ofSeconds(20);
+
+    /**
+     * 每个keep-alive连接最多处理的请求数，达到后响应带上Connection: close，为0时不限制
+     */
+    private int maxKeepAliveRequests = 0;
+
+    /**
+     * 同时打开的连接数上限，超过后新连接直接关闭，为0时不限制
+     */
+    private int maxConnections = 0;
+
+    /**
+     * 响应压缩级别（1-9），是否压缩及压缩条件由server.compression.*配置
+     */
+    private int compressionLevel = 6;
+
+    /**
+     * 请求路径到Servlet和过滤器链的缓存容量，0表示不缓存
+     */
+    private int dispatcherCacheSize = 1024;
+
+    /**
+     * 停机时等待正在处理的请求完成的最长时间，超时后强制关闭连接
+     */
+    private Duration shutdownTimeout = Duration.ofSeconds(30);
+
+    private final Executor executor = new Executor();
+
+    private final Codec codec = new Codec();
+
+    private final Listener tcp = new Listener();
+
+    private final Listener domainSocket = new Listener();
+
+    private final StaticResources staticResources = new StaticResources();
+
+    private final ResourceCache resourceCache = new ResourceCache();
+
+    private final Admission admission = new Admission();
+
+    public int getBossThreads() {
+        return bossThreads;
+    }
+
+    public void setBossThreads(int bossThreads) {
+        this.bossThreads = bossThreads;
+    }
+
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    public void setWorkerThreads(int workerThreads) {
+        this.workerThreads = workerThreads;
+    }
+
+    public int getAcceptors() {
+        return acceptors;
+    }
+
+    public void setAcceptors(int acceptors) {
+        this.acceptors = acceptors;
+    }
+
+    public int getBacklog() {
+        return backlog;
+    }
+
+    public void setBacklog(int backlog) {
+        this.backlog = backlog;
+    }
+
+    public boolean isReuseAddress() {
+        return reuseAddress;
+    }
+
+    public void setReuseAddress(boolean reuseAddress) {
+        this.reuseAddress = reuseAddress;
+    }
+
+    public boolean isTcpNoDelay() {
+        return tcpNoDelay;
+    }
+
+    public void setTcpNoDelay(boolean tcpNoDelay) {
+        this.tcpNoDelay = tcpNoDelay;
+    }
+
+    public Boolean getSoKeepAlive() {
+        return soKeepAlive;
+    }
+
+    public void setSoKeepAlive(Boolean soKeepAlive) {
+        this.soKeepAlive = soKeepAlive;
+    }
+
+    public Integer getReceiveBufferSize() {
+        return receiveBufferSize;
+    }
+
+    public void setReceiveBufferSize(Integer receiveBufferSize) {
+        this.receiveBufferSize = receiveBufferSize;
+    }
+
+    public Integer getSendBufferSize() {
+        return sendBufferSize;
+    }
+
+    public void setSendBufferSize(Integer sendBufferSize) {
+        this.sendBufferSize = sendBufferSize;
+    }
+
+    public int getWriteBufferLowWaterMark() {
+        return writeBufferLowWaterMark;
+    }
+
+    public void setWriteBufferLowWaterMark(int writeBufferLowWaterMark) {
+        this.writeBufferLowWaterMark = writeBufferLowWaterMark;
+    }
+
+    public int getWriteBufferHighWaterMark() {
+        return writeBufferHighWaterMark;
+    }
+
+    public void setWriteBufferHighWaterMark(int writeBufferHighWaterMark) {
+        this.writeBufferHighWaterMark = writeBufferHighWaterMark;
+    }
+
+    public int getReadBufferLowWaterMark() {
+        return readBufferLowWaterMark;
+    }
+
+    public void setReadBufferLowWaterMark(int readBufferLowWaterMark) {
+        this.readBufferLowWaterMark = readBufferLowWaterMark;
+    }
+
+    public int getReadBufferHighWaterMark() {
+        return readBufferHighWaterMark;
+    }
+
+    public void setReadBufferHighWaterMark(int readBufferHighWaterMark) {
+        this.readBufferHighWaterMark = readBufferHighWaterMark;
+    }
+
+    public Duration getReadTimeout() {
+        return readTimeout;
+    }
+
+    public void setReadTimeout(Duration readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    public Duration getWriteTimeout() {
+        return writeTimeout;
+    }
+
+    public void setWriteTimeout(Duration writeTimeout) {
+        this.writeTimeout = writeTimeout;
+    }
+
+    public Duration getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout(Duration idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    public Duration getRequestHeaderTimeout() {
+        return requestHeaderTimeout;
+    }
+
+    public void setRequestHeaderTimeout(Duration requestHeaderTimeout) {
+        this.requestHeaderTimeout = requestHeaderTimeout;
+    }
+
+    public int getMaxKeepAliveRequests() {
+        return maxKeepAliveRequests;
+    }
+
+    public void setMaxKeepAliveRequests(int maxKeepAliveRequests) {
+        this.maxKeepAliveRequests = maxKeepAliveRequests;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    public int getDispatcherCacheSize() {
+        return dispatcherCacheSize;
+    }
+
+    public void setDispatcherCacheSize(int dispatcherCacheSize) {
+        this.dispatcherCacheSize = dispatcherCacheSize;
+    }
+
+    public Duration getShutdownTimeout() {
+        return shutdownTimeout;
+    }
+
+    public void setShutdownTimeout(Duration shutdownTimeout) {
+        this.shutdownTimeout = shutdownTimeout;
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    public Codec getCodec() {
+        return codec;
+    }
+
+    public Listener getTcp() {
+        return tcp;
+    }
+
+    public Listener getDomainSocket() {
+        return domainSocket;
+    }
+
+    public StaticResources getStaticResources() {
+        return staticResources;
+    }
+
+    public ResourceCache getResourceCache() {
+        return resourceCache;
+    }
+
+    public Admission getAdmission() {
+        return admission;
+    }
+
+    /**
+     * 过载保护：请求交给Servlet执行器之前检查执行器的积压，超过阈值时直接在IO线程上返回503
+     */
+    public static class Admission {
+
+        /**
+         * 执行器中排队未开始执行的任务数上限，为0时不限制
+         */
+        private int maxQueuedTasks = 0;
+
+        /**
+         * 执行器中最早排队的任务等待时间上限，为空时不限制
+         */
+        private Duration maxQueueTime;
+
+        /**
+         * 503响应的Retry-After，按秒取整
+         */
+        private Duration retryAfter = Duration.ofSeconds(1);
+
+        private final AdaptiveLimit adaptiveLimit = new AdaptiveLimit();
+
+        public int getMaxQueuedTasks() {
+            return maxQueuedTasks;
+        }
+
+        public void setMaxQueuedTasks(int maxQueuedTasks) {
+            this.maxQueuedTasks = maxQueuedTasks;
+        }
+
+        public Duration getMaxQueueTime() {
+            return maxQueueTime;
+        }
+
+        public void setMaxQueueTime(Duration maxQueueTime) {
+            this.maxQueueTime = maxQueueTime;
+        }
+
+        public Duration getRetryAfter() {
+            return retryAfter;
+        }
+
+        public void setRetryAfter(Duration retryAfter) {
+            this.retryAfter = retryAfter;
+        }
+
+        public AdaptiveLimit getAdaptiveLimit() {
+            return adaptiveLimit;
+        }
+    }
+
+    /**
+     * 根据请求耗时自动调整的并发上限，超过上限的请求直接返回503
+     */
+    public static class AdaptiveLimit {
+
+        private boolean enabled = false;
+
+        /**
+         * 初始并发上限
+         */
+        private int initialLimit = 20;
+
+        private int minLimit = 1;
+
+        private int maxLimit = 1000;
+
+        /**
+         * 最近的平均耗时超过长期平均耗时的这个倍数后开始缩小上限
+         */
+        private double rttTolerance = 1.5;
+
+        /**
+         * 每次调整向新上限移动的比例，(0, 1]
+         */
+        private double smoothing = 0.2;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getInitialLimit() {
+            return initialLimit;
+        }
+
+        public void setInitialLimit(int initialLimit) {
+            this.initialLimit = initialLimit;
+        }
+
+        public int getMinLimit() {
+            return minLimit;
+        }
+
+        public void setMinLimit(int minLimit) {
+            this.minLimit = minLimit;
+        }
+
+        public int getMaxLimit() {
+            return maxLimit;
+        }
+
+        public void setMaxLimit(int maxLimit) {
+            this.maxLimit = maxLimit;
+        }
+
+        public double getRttTolerance() {
+            return rttTolerance;
+        }
+
+        public void setRttTolerance(double rttTolerance) {
+            this.rttTolerance = rttTolerance;
+        }
+
+        public double getSmoothing() {
+            return smoothing;
+        }
+
+        public void setSmoothing(double smoothing) {
+            this.smoothing = smoothing;
+        }
+    }
+
+    /**
+     * ServletContext.getResource/getResourceAsStream的缓存
+     */
+    public static class ResourceCache {
+
+        /**
+         * 最多缓存的路径数，包括未找到的路径
+         */
+        private int maxEntries = 1000;
+
+        /**
+         * 缓存资源内容的总字节数上限
+         */
+        private long maxSize = 10 * 1024 * 1024;
+
+        /**
+         * 单个资源缓存内容的字节数上限，更大的资源只缓存URL
+         */
+        private int maxResourceSize = 64 * 1024;
+
+        /**
+         * 开发模式：磁盘文件修改后重新加载，不缓存未找到的路径
+         */
+        private boolean checkModified = false;
+
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public long getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(long maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public int getMaxResourceSize() {
+            return maxResourceSize;
+        }
+
+        public void setMaxResourceSize(int maxResourceSize) {
+            this.maxResourceSize = maxResourceSize;
+        }
+
+        public boolean isCheckModified() {
+            return checkModified;
+        }
+
+        public void setCheckModified(boolean checkModified) {
+            this.checkModified = checkModified;
+        }
+    }
+
+    /**
+     * 由IO线程直接响应的静态资源，命中时不经过Servlet执行器和过滤器链
+     */
+    public static class StaticResources {
+
+        /**
+         * 是否启用
+         */
+        private boolean enabled = false;
+
+        /**
+         * 查找静态资源的位置，支持classpath:和file:前缀，默认与Spring Boot的静态资源位置相同
+         */
+        private List<String> locations = new ArrayList<>(Arrays.asList(
+                "classpath:/META-INF/resources/", "classpath:/resources/", "classpath:/static/", "classpath:/public/"));
+
+        /**
+         * 响应的Cache-Control max-age，不设置则不输出Cache-Control
+         */
+        private Duration cachePeriod;
+
+        /**
+         * jar中单个资源缓存在内存中的最大字节数，更大的资源交给Servlet处理
+         */
+        private int maxCachedResourceSize = 1024 * 1024;
+
+        /**
+         * 缓存jar中资源的总字节数上限
+         */
+        private long cacheMaxSize = 32 * 1024 * 1024;
+
+        /**
+         * 客户端接受时，优先返回同目录下预先压缩好的.br/.gz文件
+         */
+        private boolean precompressed = true;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public List<String> getLocations() {
+            return locations;
+        }
+
+        public void setLocations(List<String> locations) {
+            this.locations = locations;
+        }
+
+        public Duration getCachePeriod() {
+            return cachePeriod;
+        }
+
+        public void setCachePeriod(Duration cachePeriod) {
+            this.cachePeriod = cachePeriod;
+        }
+
+        public int getMaxCachedResourceSize() {
+            return maxCachedResourceSize;
+        }
+
+        public void setMaxCachedResourceSize(int maxCachedResourceSize) {
+            this.maxCachedResourceSize = maxCachedResourceSize;
+        }
+
+        public boolean isPrecompressed() {
+            return precompressed;
+        }
+
+        public void setPrecompressed(boolean precompressed) {
+            this.precompressed = precompressed;
+        }
+
+        public long getCacheMaxSize() {
+            return cacheMaxSize;
+        }
+
+        public void setCacheMaxSize(long cacheMaxSize) {
+            this.cacheMaxSize = cacheMaxSize;
+        }
+    }
+
+    /**
+     * 单个监听（TCP端口或unix domain socket）的配置
+     */
+    public static class Listener {
+
+        /**
+         * 是否启用该监听，不设置时沿用server.port.enable：为true只监听TCP端口，否则只监听domain socket
+         */
+        private Boolean enabled;
+
+        /**
+         * 该监听的HTTP解码限制，不设置则使用server.netty.codec
+         */
+        private Codec codec;
+
+        public Boolean getEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(Boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Codec getCodec() {
+            return codec;
+        }
+
+        public void setCodec(Codec codec) {
+            this.codec = codec;
+        }
+    }
+
+    /**
+     * 执行Servlet的线程池配置
+     */
+    public static class Executor {
+
+        /**
+         * 执行策略
+         */
+        private Strategy strategy = Strategy.PINNED;
+
+        /**
+         * 执行Servlet的线程数，pinned为EventExecutor个数，thread-pool为最大线程数，fork-join为并行度
+         */
+        private int threads = 50;
+
+        /**
+         * thread-pool的核心线程数，不设置则与threads相同
+         */
+        private Integer coreThreads;
+
+        /**
+         * thread-pool的任务队列长度
+         */
+        private int queueCapacity = 1000;
+
+        /**
+         * thread-pool中超过核心线程数的空闲线程存活时间
+         */
+        private Duration keepAlive = Duration.ofSeconds(60);
+
+        public Strategy getStrategy() {
+            return strategy;
+        }
+
+        public void setStrategy(Strategy strategy) {
+            this.strategy = strategy;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public void setThreads(int threads) {
+            this.threads = threads;
+        }
+
+        public Integer getCoreThreads() {
+            return coreThreads;
+        }
+
+        public void setCoreThreads(Integer coreThreads) {
+            this.coreThreads = coreThreads;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public Duration getKeepAlive() {
+            return keepAlive;
+        }
+
+        public void setKeepAlive(Duration keepAlive) {
+            this.keepAlive = keepAlive;
+        }
+
+        public enum Strategy {
+            /**
+             * 每个连接绑定一个单线程EventExecutor（默认）
+             */
+            PINNED,
+            /**
+             * 有界队列的ThreadPoolExecutor
+             */
+            THREAD_POOL,
+            /**
+             * 工作窃取的ForkJoinPool
+             */
+            FORK_JOIN,
+            /**
+             * 每个请求一个虚拟线程，需要JDK 21+，不支持时退回thread-pool
+             */
+            VIRTUAL
+        }
+    }
+
+    /**
+     * HttpServerCodec的解码限制
+     */
+    public static class Codec {
+
+        /**
+         * 请求行的最大长度
+         */
+        private int maxInitialLineLength = 4096;
+
+        /**
+         * 请求头的最大长度
+         */
+        private int maxHeaderSize = 8192;
+
+        /**
+         * 单个HttpContent的最大长度
+         */
+        private int maxChunkSize = 8192;
+
+        /**
+         * 是否校验请求头
+         */
+        private boolean validateHeaders = false;
+
+        public int getMaxInitialLineLength() {
+            return maxInitialLineLength;
+        }
+
+        public void setMaxInitialLineLength(int maxInitialLineLength) {
+            this.maxInitialLineLength = maxInitialLineLength;
+        }
+
+        public int getMaxHeaderSize() {
+            return maxHeaderSize;
+        }
+
+        public void setMaxHeaderSize(int maxHeaderSize) {
+            this.maxHeaderSize = maxHeaderSize;
+        }
+
+        public int getMaxChunkSize() {
+            return maxChunkSize;
+        }
+
+        public void setMaxChunkSize(int maxChunkSize) {
+            this.maxChunkSize = maxChunkSize;
+        }
+
+        public boolean isValidateHeaders() {
+            return validateHeaders;
+        }
+
+        public void setValidateHeaders(boolean validateHeaders) {
+            this.validateHeaders = validateHeaders;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package org.honeycomb.tools.netty.core;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 挂在监听channel上，统计每个acceptor接收的连接数，用于确认SO_REUSEPORT下连接是否均衡
+ * <p>
+ * User: luluful
+ * Date: 10/18/26
+ */
+@ChannelHandler.Sharable
+class AcceptorConnectionCounter extends ChannelInboundHandlerAdapter {
+    private final AtomicInteger acceptorIndex = new AtomicInteger();
+    private final Map<Channel, Acceptor> acceptors = new ConcurrentHashMap<>();
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        acceptors.put(ctx.channel(), new Acceptor(acceptorIndex.getAndIncrement()));
+    }
+
+    /**
+     * 监听channel读到的消息就是新接收的子channel
+     */
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        Acceptor acceptor = acceptors.get(ctx.channel());
+        if (acceptor != null) {
+            acceptor.accepted.increment();
+        }
+        ctx.fireChannelRead(msg);
+    }
+
+    /**
+     * @return acceptor名称（序号和监听地址）到累计连接数的映射，按acceptor序号排列
+     */
+    Map<String, Long> getConnectionCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        acceptors.entrySet().stream()
+                .sorted((a, b) -> Integer.compare(a.getValue().index, b.getValue().index))
+                .forEach(e -> counts.put("acceptor-" + e.getValue().index + " " + e.getKey().localAddress(), e.getValue().accepted.sum()));
+        return counts;
+    }
+
+    private static class Acceptor {
+        final int index;
+        final LongAdder accepted = new LongAdder();
+
+        Acceptor(int index) {
+            this.index = index;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package org.honeycomb.tools.netty.core;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * 根据请求耗时自动调整的并发上限（gradient算法）
+ * <p>
+ * 每个采样窗口计算平均耗时shortRtt，并用指数移动平均维护长期耗时longRtt。
+ * shortRtt明显高于longRtt说明开始排队，按longRtt/shortRtt的比例缩小上限；耗时平稳时每个窗口增加sqrt(limit)，
+ * 逐步探测吞吐量最高的并发数。用长期平均而不是最小耗时作为基准，不同接口耗时相差很大时也能工作
+ * <p>
+ * 耗时从请求交给执行器开始，到响应的最后一个HttpContent写出为止，包括在执行器中排队的时间
+ * <p>
+ * User: luluful
+ * Date: 10/18/26
+ */
+public class AdaptiveConcurrencyLimiter {
+    private static final long MIN_WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final int MIN_WINDOW_SAMPLES = 10;
+    private static final double LONG_RTT_DECAY = 1.0 / 600; //长期耗时约等于最近600个窗口的平均
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double rttTolerance; //shortRtt超过longRtt的这个倍数才开始缩小上限
+    private final double smoothing; //每次调整向新上限移动的比例
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile int limit;
+    private volatile long shortRttNanos;
+    private volatile long longRttNanos;
+    private final LongAdder acceptedRequests = new LongAdder();
+    private final LongAdder rejectedRequests = new LongAdder();
+
+    //采样窗口，在synchronized中访问
+    private double estimatedLimit;
+    private long windowStartNanos = System.nanoTime();
+    private long windowRttSum;
+    private int windowSamples;
+    private int windowMaxInFlight;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double rttTolerance, double smoothing) {
+        checkArgument(minLimit > 0 && minLimit <= maxLimit, "Invalid limit range [%s, %s]", minLimit, maxLimit);
+        checkArgument(rttTolerance >= 1.0, "rttTolerance must be at least 1.0: %s", rttTolerance);
+        checkArgument(smoothing > 0 && smoothing <= 1.0, "smoothing must be in (0, 1]: %s", smoothing);
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.rttTolerance = rttTolerance;
+        this.smoothing = smoothing;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.estimatedLimit = limit;
+    }
+
+    /**
+     * 在IO线程上调用，并发数未达到上限时占用一个名额
+     *
+     * @return false=已达到上限，请求应该被拒绝
+     */
+    boolean tryAcquire() {
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= limit) {
+                rejectedRequests.increment();
+                return false;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        acceptedRequests.increment();
+        return true;
+    }
+
+    /**
+     * 释放tryAcquire占用的名额
+     *
+     * @param startNanos 请求被接收的时间
+     * @param success    false=响应没有写完（连接断开等），不计入耗时
+     */
+    void release(long startNanos, boolean success) {
+        int current = inFlight.getAndDecrement();
+        if (success) {
+            sample(System.nanoTime() - startNanos, current);
+        }
+    }
+
+    private synchronized void sample(long rttNanos, int currentInFlight) {
+        windowRttSum += rttNanos;
+        windowSamples++;
+        windowMaxInFlight = Math.max(windowMaxInFlight, currentInFlight);
+        long now = System.nanoTime();
+        if (windowSamples < MIN_WINDOW_SAMPLES || now - windowStartNanos < MIN_WINDOW_NANOS) {
+            return;
+        }
+        long shortRtt = windowRttSum / windowSamples;
+        int maxInFlight = windowMaxInFlight;
+        windowStartNanos = now;
+        windowRttSum = 0;
+        windowSamples = 0;
+        windowMaxInFlight = 0;
+        update(shortRtt, maxInFlight);
+    }
+
+    private void update(long shortRtt, int maxInFlight) {
+        long longRtt = longRttNanos == 0 ? shortRtt : (long) (longRttNanos * (1 - LONG_RTT_DECAY) + shortRtt * LONG_RTT_DECAY);
+        if (longRtt > shortRtt * 2) {
+            longRtt = (long) (longRtt * 0.95); //负载下降后让基准尽快回落
+        }
+        shortRttNanos = shortRtt;
+        longRttNanos = longRtt;
+        if (maxInFlight < estimatedLimit / 2) {
+            return; //请求量远低于上限时耗时不能说明上限是否合适
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, rttTolerance * longRtt / Math.max(1, shortRtt)));
+        double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        newLimit = estimatedLimit * (1 - smoothing) + newLimit * smoothing;
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+        limit = (int) estimatedLimit;
+    }
+
+    /**
+     * @return 当前的并发上限
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return 当前占用的名额数
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return 最近一个采样窗口的平均耗时，单位毫秒
+     */
+    public double getShortRttMillis() {
+        return shortRttNanos / 1_000_000.0;
+    }
+
+    /**
+     * @return 长期平均耗时，单位毫秒
+     */
+    public double getLongRttMillis() {
+        return longRttNanos / 1_000_000.0;
+    }
+
+    public long getAcceptedRequests() {
+        return acceptedRequests.sum();
+    }
+
+    public long getRejectedRequests() {
+        return rejectedRequests.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "limit=" + limit + ", inFlight=" + inFlight.get() + ", shortRtt=" + String.format("%.1fms", getShortRttMillis())
+                + ", longRtt=" + String.format("%.1fms", getLongRttMillis()) + ", accepted=" + getAcceptedRequests()
+                + ", rejected=" + getRejectedRequests();
+    }
+}
@@ -0,0 +1,131 @@
+package org.honeycomb.tools.netty.core;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.EmptyHttpHeaders;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.ReadOnlyHttpHeaders;
+import org.honeycomb.tools.netty.executor.MonitoredExecutor;
+
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * 过载保护：IO线程把请求交给Servlet执行器之前检查执行器的积压和自适应并发上限，超过时直接返回503，
+ * 不创建Servlet的请求和响应对象
+ * <p>
+ * 503响应是预先构造好的FullHttpResponse，内容为空、响应头只读，可以在所有连接间共享
+ * <p>
+ * User: luluful
+ * Date: 10/18/26
+ */
+public class AdmissionControl {
+    private final ConnectionTracker connectionTracker;
+    private final int maxQueuedTasks; //0表示不限制
+    private final long maxQueueNanos; //0表示不限制
+    private final AdaptiveConcurrencyLimiter limiter; //为null时不限制并发数
+    private final FullHttpResponse keepAliveResponse;
+    private final FullHttpResponse closeResponse;
+    private final LongAdder rejectedRequests = new LongAdder();
+
+    /**
+     * @param maxQueuedTasks 执行器排队任务数上限，0表示不限制
+     * @param maxQueueTime   最早排队任务的等待时间上限，为null时不限制
+     * @param retryAfter     503响应的Retry-After
+     * @param limiter        自适应并发上限，为null时不限制
+     */
+    public AdmissionControl(ConnectionTracker connectionTracker, int maxQueuedTasks, Duration maxQueueTime, Duration retryAfter,
+                            AdaptiveConcurrencyLimiter limiter) {
+        this.connectionTracker = checkNotNull(connectionTracker);
+        this.maxQueuedTasks = maxQueuedTasks;
+        this.maxQueueNanos = maxQueueTime == null ? 0 : maxQueueTime.toNanos();
+        this.limiter = limiter;
+        String retryAfterSeconds = String.valueOf(retryAfter == null ? 1 : Math.max(1, retryAfter.getSeconds()));
+        this.keepAliveResponse = newServiceUnavailable(retryAfterSeconds, HttpHeaderValues.KEEP_ALIVE);
+        this.closeResponse = newServiceUnavailable(retryAfterSeconds, HttpHeaderValues.CLOSE);
+    }
+
+    private static FullHttpResponse newServiceUnavailable(String retryAfter, CharSequence connection) {
+        ReadOnlyHttpHeaders headers = new ReadOnlyHttpHeaders(true,
+                HttpHeaderNames.CONTENT_LENGTH, "0",
+                HttpHeaderNames.RETRY_AFTER, retryAfter,
+                HttpHeaderNames.CONNECTION, connection);
+        return new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.SERVICE_UNAVAILABLE, Unpooled.EMPTY_BUFFER,
+                headers, EmptyHttpHeaders.INSTANCE);
+    }
+
+    /**
+     * @return true=配置了执行器积压的阈值，需要统计执行器的排队情况
+     */
+    public boolean isQueueLimited() {
+        return maxQueuedTasks > 0 || maxQueueNanos > 0;
+    }
+
+    /**
+     * @return 自适应并发上限，未启用时为null
+     */
+    public AdaptiveConcurrencyLimiter getLimiter() {
+        return limiter;
+    }
+
+    /**
+     * 在IO线程上调用，判断执行器是否还能接收新请求。
+     * 返回true时占用一个并发名额，响应写完后必须调用{@link #requestCompleted(long, boolean)}
+     */
+    boolean admit(Executor executor) {
+        if (executor instanceof MonitoredExecutor) {
+            MonitoredExecutor monitored = (MonitoredExecutor) executor;
+            if ((maxQueuedTasks > 0 && monitored.getQueuedTasks() >= maxQueuedTasks)
+                    || (maxQueueNanos > 0 && monitored.getOldestQueuedNanos() >= maxQueueNanos)) {
+                return false;
+            }
+        }
+        return limiter == null || limiter.tryAcquire();
+    }
+
+    /**
+     * 被接收的请求的响应已经写完或写失败，释放并发名额并记录耗时
+     *
+     * @param startNanos 请求被接收的时间
+     * @param success    响应是否完整写出
+     */
+    public void requestCompleted(long startNanos, boolean success) {
+        if (limiter != null) {
+            limiter.release(startNanos, success);
+        }
+    }
+
+    /**
+     * 按请求序号写出503，响应写完后算作请求完成
+     *
+     * @param keepAlive 是否保持连接，已经调用过ConnectionTracker.requestStarted
+     */
+    void reject(ChannelHandlerContext ctx, int sequence, boolean keepAlive) {
+        rejectedRequests.increment();
+        Channel channel = ctx.channel();
+        ChannelFuture future = ctx.writeAndFlush(new SequencedMessage(sequence, keepAlive ? keepAliveResponse : closeResponse));
+        future.addListener(f -> connectionTracker.requestCompleted(channel));
+        if (!keepAlive) {
+            ConnectionCloseReason reason = connectionTracker.isDraining()
+                    ? ConnectionCloseReason.SHUTDOWN : ConnectionCloseReason.NOT_KEEP_ALIVE;
+            future.addListener(f -> ConnectionCloseReason.close(channel, reason));
+        }
+    }
+
+    /**
+     * @return 因过载被拒绝的累计请求数
+     */
+    public long getRejectedRequests() {
+        return rejectedRequests.sum();
+    }
+}
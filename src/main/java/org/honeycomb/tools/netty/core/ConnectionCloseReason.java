@@ -0,0 +1,78 @@
+package org.honeycomb.tools.netty.core;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.util.AttributeKey;
+
+/**
+ * 连接关闭的原因，服务端主动关闭连接前先记录在channel上，连接断开时由ConnectionTracker计数
+ * <p>
+ * 只记录第一次标记的原因，没有标记的连接视为客户端关闭
+ * <p>
+ * User: luluful
+ * Date: 10/18/26
+ */
+public enum ConnectionCloseReason {
+    /**
+     * 客户端主动关闭或网络异常
+     */
+    CLIENT,
+    /**
+     * 请求或响应不是keep-alive，响应写完后关闭
+     */
+    NOT_KEEP_ALIVE,
+    /**
+     * keep-alive连接空闲超时
+     */
+    IDLE_TIMEOUT,
+    /**
+     * 请求头在限定时间内没有完整到达
+     */
+    HEADER_TIMEOUT,
+    /**
+     * 请求体数据到达间隔超时
+     */
+    BODY_TIMEOUT,
+    /**
+     * 客户端长时间不读取响应
+     */
+    WRITE_TIMEOUT,
+    /**
+     * 连接上的请求数达到maxKeepAliveRequests
+     */
+    MAX_REQUESTS,
+    /**
+     * 打开的连接数达到maxConnections
+     */
+    MAX_CONNECTIONS,
+    /**
+     * 停机排空
+     */
+    SHUTDOWN,
+    /**
+     * 处理请求时出现异常
+     */
+    ERROR;
+
+    private static final AttributeKey<ConnectionCloseReason> REASON = AttributeKey.valueOf(ConnectionCloseReason.class, "REASON");
+
+    /**
+     * 记录连接即将被关闭的原因，已经记录过时忽略
+     */
+    public static void mark(Channel channel, ConnectionCloseReason reason) {
+        channel.attr(REASON).setIfAbsent(reason);
+    }
+
+    /**
+     * 记录原因并关闭连接
+     */
+    public static ChannelFuture close(Channel channel, ConnectionCloseReason reason) {
+        mark(channel, reason);
+        return channel.close();
+    }
+
+    static ConnectionCloseReason of(Channel channel) {
+        ConnectionCloseReason reason = channel.attr(REASON).get();
+        return reason == null ? CLIENT : reason;
+    }
+}
@@ -0,0 +1,187 @@
+package org.honeycomb.tools.netty.core;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.concurrent.ScheduledFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * 连接级别的超时：keep-alive空闲、请求头到达、请求体到达和客户端读取响应，超时后关闭连接并记录原因
+ * <p>
+ * 本Handler放在解码器之后，观察解码出的请求和写出的响应；readActivityHandler()放在解码器之前，
+ * 观察原始字节，用于判断请求头从什么时候开始到达。所有状态只在IO线程上访问
+ * <p>
+ * User: luluful
+ * Date: 10/18/26
+ */
+class ConnectionTimeoutHandler extends ChannelDuplexHandler {
+    private static final Logger log = LoggerFactory.getLogger(ConnectionTimeoutHandler.class);
+    private static final long MIN_CHECK_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long MAX_CHECK_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final ConnectionTracker connectionTracker;
+    private final long idleTimeoutNanos; //以下超时为0表示不限制
+    private final long headerTimeoutNanos;
+    private final long bodyTimeoutNanos;
+    private final long writeTimeoutNanos;
+    private final ReadActivity readActivity = new ReadActivity();
+
+    private long lastReadNanos;
+    private long lastWriteNanos;
+    private long headerStartNanos;
+    private long unwritableSinceNanos;
+    private boolean readingHeaders; //收到了新请求的字节，但请求头还没有解码完成
+    private boolean readingBody; //请求头已经解码，请求体还没有完整到达
+    private boolean unwritable;
+    private ScheduledFuture<?> checkTask;
+
+    ConnectionTimeoutHandler(ConnectionTracker connectionTracker, Duration idleTimeout, Duration headerTimeout,
+                             Duration bodyTimeout, Duration writeTimeout) {
+        this.connectionTracker = checkNotNull(connectionTracker);
+        this.idleTimeoutNanos = toNanos(idleTimeout);
+        this.headerTimeoutNanos = toNanos(headerTimeout);
+        this.bodyTimeoutNanos = toNanos(bodyTimeout);
+        this.writeTimeoutNanos = toNanos(writeTimeout);
+    }
+
+    private static long toNanos(Duration timeout) {
+        return timeout == null || timeout.isNegative() ? 0 : timeout.toNanos();
+    }
+
+    /**
+     * @return 放在解码器之前的Handler，记录原始字节的到达时间
+     */
+    ChannelHandler readActivityHandler() {
+        return readActivity;
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        long now = System.nanoTime();
+        lastReadNanos = now;
+        lastWriteNanos = now;
+        long interval = checkInterval();
+        if (interval > 0) {
+            //每个连接一个定时任务，检查粒度为最短超时的1/4，在100ms到1s之间
+            checkTask = ctx.executor().scheduleAtFixedRate(() -> check(ctx), interval, interval, TimeUnit.NANOSECONDS);
+        }
+        ctx.fireChannelActive();
+    }
+
+    private long checkInterval() {
+        long min = Long.MAX_VALUE;
+        for (long timeout : new long[]{idleTimeoutNanos, headerTimeoutNanos, bodyTimeoutNanos, writeTimeoutNanos}) {
+            if (timeout > 0) {
+                min = Math.min(min, timeout);
+            }
+        }
+        if (min == Long.MAX_VALUE) {
+            return 0;
+        }
+        return Math.max(MIN_CHECK_INTERVAL_NANOS, Math.min(MAX_CHECK_INTERVAL_NANOS, min / 4));
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof HttpRequest) {
+            readingHeaders = false;
+            readingBody = true;
+        }
+        if (msg instanceof LastHttpContent) {
+            readingBody = false;
+        }
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        lastWriteNanos = System.nanoTime();
+        ctx.write(msg, promise);
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        boolean writable = ctx.channel().isWritable();
+        if (!writable && !unwritable) {
+            unwritableSinceNanos = System.nanoTime();
+        }
+        unwritable = !writable;
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        cancelCheck();
+        ctx.fireChannelInactive();
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        cancelCheck();
+    }
+
+    private void cancelCheck() {
+        if (checkTask != null) {
+            checkTask.cancel(false);
+            checkTask = null;
+        }
+    }
+
+    private void check(ChannelHandlerContext ctx) {
+        Channel channel = ctx.channel();
+        long now = System.nanoTime();
+        ConnectionCloseReason reason = null;
+        if (unwritable && expired(writeTimeoutNanos, unwritableSinceNanos, now)) {
+            reason = ConnectionCloseReason.WRITE_TIMEOUT;
+        } else if (readingHeaders) {
+            if (expired(headerTimeoutNanos, headerStartNanos, now)) {
+                reason = ConnectionCloseReason.HEADER_TIMEOUT;
+            }
+        } else if (readingBody) {
+            if (!channel.config().isAutoRead()) {
+                lastReadNanos = now; //请求体积压导致暂停读取时，客户端没有机会发送数据，不计入超时
+            } else if (expired(bodyTimeoutNanos, lastReadNanos, now)) {
+                reason = ConnectionCloseReason.BODY_TIMEOUT;
+            }
+        } else if (connectionTracker.getInFlightRequests(channel) == 0
+                && expired(idleTimeoutNanos, Math.max(lastReadNanos, lastWriteNanos), now)) {
+            reason = ConnectionCloseReason.IDLE_TIMEOUT;
+        }
+        if (reason != null) {
+            log.debug("Closing {} on {}", channel, reason);
+            cancelCheck();
+            ConnectionCloseReason.close(channel, reason);
+        }
+    }
+
+    private static boolean expired(long timeoutNanos, long sinceNanos, long now) {
+        return timeoutNanos > 0 && now - sinceNanos >= timeoutNanos;
+    }
+
+    /**
+     * 解码器之前的原始字节：不在请求头或请求体中间时，收到的字节是下一个请求的开始
+     */
+    private class ReadActivity extends ChannelInboundHandlerAdapter {
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            lastReadNanos = System.nanoTime();
+            if (!readingHeaders && !readingBody) {
+                readingHeaders = true;
+                headerStartNanos = lastReadNanos;
+            }
+            ctx.fireChannelRead(msg);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package org.honeycomb.tools.netty.core;
+
+import io.netty.channel.Channel;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 跟踪所有连接和正在处理的请求，用于停机时排空连接
+ * <p>
+ * 请求从ServletContentHandler读到请求头开始计数，到响应的最后一个HttpContent写出为止。
+ * 排空期间空闲的keep-alive连接直接关闭，忙碌的连接在下一个响应里带上Connection: close，响应写完后关闭
+ * <p>
+ * 同时限制打开的连接数和每个连接上的请求数，并按ConnectionCloseReason统计关闭的连接
+ * <p>
+ * User: luluful
+ * Date: 10/18/26
+ */
+public class ConnectionTracker {
+    private static final AttributeKey<AtomicInteger> IN_FLIGHT = AttributeKey.valueOf(ConnectionTracker.class, "IN_FLIGHT");
+    private static final AttributeKey<AtomicInteger> REQUESTS = AttributeKey.valueOf(ConnectionTracker.class, "REQUESTS");
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final ChannelGroup channels = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE); //所有连接，关闭后自动移除
+    private final AtomicInteger inFlight = new AtomicInteger(); //所有连接上正在处理的请求数
+    private final AtomicInteger openConnections = new AtomicInteger(); //ChannelGroup在关闭完成后才移除，计数不够及时
+    private final Map<ConnectionCloseReason, LongAdder> closedConnections = new EnumMap<>(ConnectionCloseReason.class);
+    private final int maxConnections;
+    private final int maxKeepAliveRequests;
+    private final Object drainLock = new Object();
+    private volatile boolean draining;
+
+    /**
+     * @param maxConnections       同时打开的连接数上限，0表示不限制
+     * @param maxKeepAliveRequests 每个连接最多处理的请求数，0表示不限制
+     */
+    public ConnectionTracker(int maxConnections, int maxKeepAliveRequests) {
+        this.maxConnections = maxConnections;
+        this.maxKeepAliveRequests = maxKeepAliveRequests;
+        for (ConnectionCloseReason reason : ConnectionCloseReason.values()) {
+            closedConnections.put(reason, new LongAdder());
+        }
+    }
+
+    void connectionOpened(Channel channel) {
+        channel.attr(IN_FLIGHT).set(new AtomicInteger());
+        channel.attr(REQUESTS).set(new AtomicInteger());
+        channels.add(channel);
+        int open = openConnections.incrementAndGet();
+        if (draining) {
+            ConnectionCloseReason.close(channel, ConnectionCloseReason.SHUTDOWN); //排空期间不再接收新连接
+        } else if (maxConnections > 0 && open > maxConnections) {
+            ConnectionCloseReason.close(channel, ConnectionCloseReason.MAX_CONNECTIONS);
+        }
+    }
+
+    void connectionClosed(Channel channel) {
+        openConnections.decrementAndGet();
+        closedConnections.get(ConnectionCloseReason.of(channel)).increment();
+        AtomicInteger channelInFlight = channel.attr(IN_FLIGHT).get();
+        if (channelInFlight != null) {
+            int count = channelInFlight.getAndSet(0); //连接断开时，上面未完成的请求不会再完成了
+            if (count > 0) {
+                decrementInFlight(count);
+            }
+        }
+    }
+
+    /**
+     * @return false=连接上不再接受后续请求（停机排空或达到maxKeepAliveRequests），响应要带上Connection: close
+     */
+    boolean requestStarted(Channel channel) {
+        AtomicInteger channelInFlight = channel.attr(IN_FLIGHT).get();
+        if (channelInFlight != null) {
+            channelInFlight.incrementAndGet();
+            inFlight.incrementAndGet();
+        }
+        if (draining) {
+            ConnectionCloseReason.mark(channel, ConnectionCloseReason.SHUTDOWN);
+            return false;
+        }
+        AtomicInteger requests = channel.attr(REQUESTS).get();
+        if (maxKeepAliveRequests > 0 && requests != null && requests.incrementAndGet() >= maxKeepAliveRequests) {
+            ConnectionCloseReason.mark(channel, ConnectionCloseReason.MAX_REQUESTS);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 响应已经完整写出，排空期间如果连接上没有其他请求则关闭连接
+     */
+    public void requestCompleted(Channel channel) {
+        AtomicInteger channelInFlight = channel.attr(IN_FLIGHT).get();
+        if (channelInFlight == null) {
+            return;
+        }
+        int count;
+        do {
+            count = channelInFlight.get();
+            if (count == 0) {
+                return; //连接已经断开并清零过
+            }
+        } while (!channelInFlight.compareAndSet(count, count - 1));
+        decrementInFlight(1);
+        if (draining && count == 1) {
+            closeIfIdle(channel);
+        }
+    }
+
+    private void decrementInFlight(int count) {
+        if (inFlight.addAndGet(-count) == 0 && draining) {
+            synchronized (drainLock) {
+                drainLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * 在连接的IO线程上判断是否空闲，和requestStarted不会并发
+     */
+    private void closeIfIdle(Channel channel) {
+        channel.eventLoop().execute(() -> {
+            AtomicInteger channelInFlight = channel.attr(IN_FLIGHT).get();
+            if (channelInFlight == null || channelInFlight.get() == 0) {
+                ConnectionCloseReason.close(channel, ConnectionCloseReason.SHUTDOWN);
+            }
+        });
+    }
+
+    /**
+     * @return 连接上正在处理的请求数
+     */
+    int getInFlightRequests(Channel channel) {
+        AtomicInteger channelInFlight = channel.attr(IN_FLIGHT).get();
+        return channelInFlight == null ? 0 : channelInFlight.get();
+    }
+
+    /**
+     * @return 排空期间新的响应都要带上Connection: close
+     */
+    public boolean isDraining() {
+        return draining;
+    }
+
+    /**
+     * @return 正在处理的请求数
+     */
+    public int getInFlightRequests() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return 当前打开的连接数
+     */
+    public int getOpenConnections() {
+        return openConnections.get();
+    }
+
+    /**
+     * @return 按原因统计的累计关闭连接数
+     */
+    public Map<ConnectionCloseReason, Long> getClosedConnections() {
+        Map<ConnectionCloseReason, Long> counts = new EnumMap<>(ConnectionCloseReason.class);
+        for (Map.Entry<ConnectionCloseReason, LongAdder> entry : closedConnections.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().sum());
+        }
+        return counts;
+    }
+
+    /**
+     * 开始排空：关闭空闲连接，等待正在处理的请求完成，超时后强制关闭所有连接
+     *
+     * @return true=所有请求在超时前完成
+     */
+    boolean drain(long timeout, TimeUnit unit) throws InterruptedException {
+        draining = true;
+        for (Channel channel : channels) {
+            closeIfIdle(channel);
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (drainLock) {
+            long remaining;
+            while (inFlight.get() > 0 && (remaining = deadline - System.nanoTime()) > 0) {
+                TimeUnit.NANOSECONDS.timedWait(drainLock, remaining);
+            }
+        }
+        boolean drained = inFlight.get() == 0;
+        if (!drained) {
+            log.warn("{} in-flight request(s) did not complete within {} ms, closing {} connection(s)",
+                    inFlight.get(), unit.toMillis(timeout), channels.size());
+        }
+        for (Channel channel : channels) {
+            ConnectionCloseReason.mark(channel, ConnectionCloseReason.SHUTDOWN);
+        }
+        channels.close().awaitUninterruptibly();
+        return drained;
+    }
+}
@@ -0,0 +1,86 @@
+package org.honeycomb.tools.netty.core;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.honeycomb.tools.netty.utils.ServletRoute;
+import org.honeycomb.tools.netty.utils.UrlPatternRouter;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * 一个路由表快照以及请求路径到NettyRequestDispatcher的缓存，大部分请求集中在少数几个路径上，命中时只需要一次哈希查找
+ * <p>
+ * key是去掉查询字符串、规范化之后的路径，没有匹配Servlet的路径不缓存。
+ * 缓存只属于创建它的路由表，映射变化时由{@link #withRouter}生成新的对象整体替换，
+ * 旧快照上正在处理的请求写入的结果不会被新快照看到，也就不需要加锁或清空缓存
+ * <p>
+ * User: luluful
+ * Date: 10/18/26
+ */
+class DispatcherCache {
+    private final UrlPatternRouter router;
+    private final int maximumSize;
+    private final Cache<String, NettyRequestDispatcher> cache; //容量为0时为null，不缓存
+    private final LongAdder hits; //所有快照共用
+    private final LongAdder misses;
+
+    /**
+     * @param router      路由表快照
+     * @param maximumSize 最多缓存的路径数，0表示不缓存
+     */
+    DispatcherCache(UrlPatternRouter router, int maximumSize) {
+        this(router, maximumSize, new LongAdder(), new LongAdder());
+    }
+
+    private DispatcherCache(UrlPatternRouter router, int maximumSize, LongAdder hits, LongAdder misses) {
+        this.router = checkNotNull(router);
+        this.maximumSize = maximumSize;
+        this.cache = maximumSize > 0 ? CacheBuilder.newBuilder().maximumSize(maximumSize).build() : null;
+        this.hits = hits;
+        this.misses = misses;
+    }
+
+    /**
+     * @return 使用新路由表和空缓存的快照，命中计数继续累加
+     */
+    DispatcherCache withRouter(UrlPatternRouter router) {
+        return new DispatcherCache(router, maximumSize, hits, misses);
+    }
+
+    /**
+     * @param path 以/开头的请求路径，去掉了contextPath和查询字符串，已经规范化
+     */
+    ServletRoute route(String path) {
+        return router.route(path);
+    }
+
+    NettyRequestDispatcher get(String path) {
+        NettyRequestDispatcher dispatcher = cache == null ? null : cache.getIfPresent(path);
+        if (dispatcher != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return dispatcher;
+    }
+
+    void put(String path, NettyRequestDispatcher dispatcher) {
+        if (cache != null) {
+            cache.put(path, dispatcher);
+        }
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+
+    long size() {
+        return cache == null ? 0 : cache.size();
+    }
+}
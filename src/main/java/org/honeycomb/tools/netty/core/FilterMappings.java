@@ -0,0 +1,218 @@
+package org.honeycomb.tools.netty.core;
+
+import com.google.common.collect.Iterables;
+import org.honeycomb.tools.netty.registration.NettyFilterRegistration;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.Filter;
+import javax.servlet.ServletException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Filter的url-pattern和servlet-name映射，按Servlet和DispatcherType预先编译出过滤器数组
+ * <p>
+ * 顺序按Servlet规范：先是url-pattern映射，再是servlet-name映射，各自按注册顺序，isMatchAfter=true的排在后面。
+ * 与路径无关的映射（servlet-name和/*）在编译时确定；其他url-pattern每个请求匹配一次，
+ * 按匹配结果的位图缓存过滤器数组，同一类路径共享一个数组
+ * <p>
+ * 映射只能在Context初始化之前添加，编译结果在第一次用到时生成
+ * <p>
+ * User: luluful
+ * Date: 10/18/26
+ */
+class FilterMappings {
+    private static final int MAX_PATH_PATTERNS = Long.SIZE; //超过后不再按位图缓存
+    private static final int MAX_CACHED_VARIANTS = 256;
+
+    private final List<Mapping> urlMappings = new ArrayList<>();
+    private final List<Mapping> urlMappingsAfter = new ArrayList<>();
+    private final List<Mapping> servletNameMappings = new ArrayList<>();
+    private final List<Mapping> servletNameMappingsAfter = new ArrayList<>();
+    private final Map<DispatcherType, ConcurrentMap<String, CompiledChain>> chains = new EnumMap<>(DispatcherType.class);
+
+    FilterMappings() {
+        for (DispatcherType type : DispatcherType.values()) {
+            chains.put(type, new ConcurrentHashMap<>());
+        }
+    }
+
+    void addUrlPatternMapping(NettyFilterRegistration registration, EnumSet<DispatcherType> dispatcherTypes, boolean isMatchAfter,
+                              String urlPattern) {
+        (isMatchAfter ? urlMappingsAfter : urlMappings).add(new Mapping(registration, dispatcherTypes, checkNotNull(urlPattern), null));
+    }
+
+    void addServletNameMapping(NettyFilterRegistration registration, EnumSet<DispatcherType> dispatcherTypes, boolean isMatchAfter,
+                               String servletName) {
+        (isMatchAfter ? servletNameMappingsAfter : servletNameMappings).add(new Mapping(registration, dispatcherTypes, null,
+                checkNotNull(servletName)));
+    }
+
+    /**
+     * @param servletName 处理请求的Servlet
+     * @param path        去掉contextPath和查询字符串的请求路径
+     * @return 按顺序执行的过滤器，不能修改
+     * @throws ServletException 实例化或初始化Filter失败
+     */
+    Filter[] getFilters(String servletName, DispatcherType dispatcherType, String path) throws ServletException {
+        ConcurrentMap<String, CompiledChain> byServlet = chains.get(dispatcherType);
+        CompiledChain chain = byServlet.get(servletName);
+        if (chain == null) {
+            chain = compile(servletName, dispatcherType); //可能抛出ServletException，不能放在computeIfAbsent里
+            CompiledChain existing = byServlet.putIfAbsent(servletName, chain);
+            if (existing != null) {
+                chain = existing;
+            }
+        }
+        return chain.getFilters(path);
+    }
+
+    private CompiledChain compile(String servletName, DispatcherType dispatcherType) throws ServletException {
+        List<Filter> filters = new ArrayList<>();
+        List<String> patterns = new ArrayList<>();
+        for (Mapping mapping : Iterables.concat(urlMappings, urlMappingsAfter, servletNameMappings, servletNameMappingsAfter)) {
+            if (!mapping.dispatcherTypes.contains(dispatcherType)) {
+                continue;
+            }
+            if (mapping.servletName != null) {
+                if (mapping.servletName.equals("*") || mapping.servletName.equals(servletName)) {
+                    filters.add(mapping.registration.getFilter());
+                    patterns.add(null);
+                }
+            } else {
+                filters.add(mapping.registration.getFilter());
+                patterns.add("/*".equals(mapping.urlPattern) ? null : mapping.urlPattern);
+            }
+        }
+        return new CompiledChain(filters.toArray(new Filter[0]), patterns.toArray(new String[0]));
+    }
+
+    /**
+     * Servlet规范的url-pattern匹配：/*和/prefix/*前缀匹配，*.ext扩展名匹配，其他精确匹配
+     */
+    static boolean matches(String pattern, String path) {
+        if (pattern.endsWith("/*")) {
+            int length = pattern.length() - 2;
+            return path.regionMatches(0, pattern, 0, length) && (path.length() == length || path.charAt(length) == '/');
+        }
+        if (pattern.startsWith("*.")) {
+            int extensionLength = pattern.length() - 2;
+            int dot = path.length() - extensionLength - 1;
+            return dot >= 0 && path.charAt(dot) == '.' && path.indexOf('/', dot) < 0
+                    && path.regionMatches(dot + 1, pattern, 2, extensionLength);
+        }
+        return pattern.equals(path);
+    }
+
+    private static final class Mapping {
+        final NettyFilterRegistration registration;
+        final EnumSet<DispatcherType> dispatcherTypes;
+        final String urlPattern; //servlet-name映射时为null
+        final String servletName; //url-pattern映射时为null
+
+        Mapping(NettyFilterRegistration registration, EnumSet<DispatcherType> dispatcherTypes, String urlPattern, String servletName) {
+            this.registration = checkNotNull(registration);
+            //未指定时只对REQUEST生效
+            this.dispatcherTypes = dispatcherTypes == null || dispatcherTypes.isEmpty()
+                    ? EnumSet.of(DispatcherType.REQUEST) : EnumSet.copyOf(dispatcherTypes);
+            this.urlPattern = urlPattern;
+            this.servletName = servletName;
+        }
+    }
+
+    /**
+     * 某个Servlet在某种DispatcherType下的候选过滤器
+     */
+    private static final class CompiledChain {
+        private final Filter[] candidates;
+        private final String[] patterns; //与candidates对应，null表示与路径无关
+        private final int[] pathDependent; //需要按路径匹配的候选下标
+        private final Filter[] pathIndependentFilters; //没有路径相关的候选时直接使用
+        private final ConcurrentMap<Long, Filter[]> variants = new ConcurrentHashMap<>(); //匹配位图 -> 过滤器数组
+
+        CompiledChain(Filter[] candidates, String[] patterns) {
+            this.candidates = candidates;
+            this.patterns = patterns;
+            int count = 0;
+            for (String pattern : patterns) {
+                if (pattern != null) {
+                    count++;
+                }
+            }
+            this.pathDependent = new int[count];
+            for (int i = 0, j = 0; i < patterns.length; i++) {
+                if (patterns[i] != null) {
+                    pathDependent[j++] = i;
+                }
+            }
+            this.pathIndependentFilters = count == 0 ? build(-1L) : null;
+        }
+
+        Filter[] getFilters(String path) {
+            if (pathIndependentFilters != null) {
+                return pathIndependentFilters;
+            }
+            if (pathDependent.length > MAX_PATH_PATTERNS) {
+                return build(path);
+            }
+            long matched = 0;
+            for (int i = 0; i < pathDependent.length; i++) {
+                if (matches(patterns[pathDependent[i]], path)) {
+                    matched |= 1L << i;
+                }
+            }
+            Filter[] filters = variants.get(matched);
+            if (filters == null) {
+                filters = build(matched);
+                if (variants.size() < MAX_CACHED_VARIANTS) {
+                    variants.putIfAbsent(matched, filters);
+                }
+            }
+            return filters;
+        }
+
+        /**
+         * @param matched 第i位表示pathDependent[i]是否匹配
+         */
+        private Filter[] build(long matched) {
+            List<Filter> filters = new ArrayList<>(candidates.length);
+            for (int i = 0, j = 0; i < candidates.length; i++) {
+                boolean include = true;
+                if (patterns[i] != null) {
+                    include = (matched & (1L << j)) != 0;
+                    j++;
+                }
+                if (include && !containsInstance(filters, candidates[i])) { //同一个Filter只执行一次
+                    filters.add(candidates[i]);
+                }
+            }
+            return filters.toArray(new Filter[0]);
+        }
+
+        private Filter[] build(String path) {
+            List<Filter> filters = new ArrayList<>(candidates.length);
+            for (int i = 0; i < candidates.length; i++) {
+                if ((patterns[i] == null || matches(patterns[i], path)) && !containsInstance(filters, candidates[i])) {
+                    filters.add(candidates[i]);
+                }
+            }
+            return filters.toArray(new Filter[0]);
+        }
+
+        private static boolean containsInstance(List<Filter> filters, Filter filter) {
+            for (Filter f : filters) {
+                if (f == filter) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
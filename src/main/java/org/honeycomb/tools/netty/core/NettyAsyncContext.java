@@ -1,13 +1,13 @@
 package org.honeycomb.tools.netty.core;
 
 import com.google.common.collect.ImmutableList;
-import io.netty.channel.ChannelHandlerContext;
 
 import javax.servlet.*;
 import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 
 /**
@@ -16,14 +16,14 @@ import java.util.List;
  */
 public class NettyAsyncContext implements AsyncContext {
     private ServletRequest servletRequest;
-    private final ChannelHandlerContext ctx;
+    private final Executor executor; //执行异步任务的Servlet执行器
     private ServletResponse servletResponse;
     private boolean asyncStarted;
     private List<AsyncListener> listeners;
 
-    public NettyAsyncContext(ServletRequest servletRequest, ChannelHandlerContext ctx) {
+    public NettyAsyncContext(ServletRequest servletRequest, Executor executor) {
         this.servletRequest = servletRequest;
-        this.ctx = ctx;
+        this.executor = executor;
         this.listeners = new ArrayList<>();
     }
 
@@ -76,11 +76,11 @@ public class NettyAsyncContext implements AsyncContext {
         httpRequest.setAttribute(ASYNC_REQUEST_URI, httpRequest.getRequestURI());
         httpRequest.setAttribute(ASYNC_SERVLET_PATH, httpRequest.getServletPath());
         final NettyRequestDispatcher dispatcher = (NettyRequestDispatcher) context.getRequestDispatcher(path);
-        ctx.executor().submit(new Runnable() {
+        executor.execute(new Runnable() {
             @Override
             public void run() {
                 try {
-                    dispatcher.dispatch(httpRequest, servletResponse);
+                    dispatcher.dispatch(httpRequest, servletResponse, DispatcherType.ASYNC);
                     // TODO is this right?
                     for (AsyncListener listener : ImmutableList.copyOf(listeners)) {
                         listener.onComplete(new AsyncEvent(NettyAsyncContext.this));
@@ -105,7 +105,7 @@ public class NettyAsyncContext implements AsyncContext {
 
     @Override
     public void start(Runnable run) {
-        ctx.executor().submit(run, Object.class);
+        executor.execute(run);
     }
 
     @Override
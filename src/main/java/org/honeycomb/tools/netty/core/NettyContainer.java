@@ -1,25 +1,34 @@
 package org.honeycomb.tools.netty.core;
 
+import com.google.common.collect.ImmutableList;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.*;
-import io.netty.channel.epoll.EpollEventLoopGroup;
-import io.netty.channel.epoll.EpollServerDomainSocketChannel;
-import io.netty.channel.kqueue.KQueueEventLoopGroup;
-import io.netty.channel.kqueue.KQueueServerDomainSocketChannel;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
-import io.netty.channel.unix.DomainSocketAddress;
-import io.netty.channel.unix.DomainSocketChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.kqueue.KQueue;
 import io.netty.handler.codec.http.HttpServerCodec;
-import io.netty.util.concurrent.DefaultEventExecutorGroup;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.honeycomb.tools.netty.bootstrap.NettyServerProperties;
+import org.honeycomb.tools.netty.executor.*;
+import org.honeycomb.tools.netty.request.InboundFlowControl;
+import org.honeycomb.tools.netty.resource.StaticResourceResolver;
+import org.springframework.boot.web.server.Compression;
 import org.springframework.boot.web.server.WebServer;
 import org.springframework.boot.web.server.WebServerException;
 
 import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 
@@ -30,126 +39,336 @@ import static com.google.common.base.Preconditions.checkNotNull;
 public class NettyContainer implements WebServer {
     private final Log log = LogFactory.getLog(getClass());
 
-    private final DomainSocketAddress address; //监听socket地址
+    private final List<NettyListener> listeners; //监听地址，共享worker线程和Servlet执行器
     private final NettyContext servletContext; //Context
-    private final InetSocketAddress ipAddress; //监听端口地址
+    private final NettyServerProperties properties; //容器配置
 
     private EventLoopGroup bossGroup;
     private EventLoopGroup workerGroup;
-    private DefaultEventExecutorGroup servletExecutor;
+    private ServletExecutionStrategy executionStrategy;
+    private final AcceptorConnectionCounter acceptorCounter = new AcceptorConnectionCounter();
+    private final List<Channel> serverChannels = new ArrayList<>(); //已绑定的监听channel
+    private final ConnectionTracker connectionTracker;
+    private final InboundFlowControl inboundFlowControl; //所有连接共享水位配置和限流计数
+    private final AdmissionControl admissionControl; //执行器过载时直接返回503
+    private StaticResourceResolver staticResourceResolver; //未启用静态资源时为null
+    private Compression compression; //Spring的server.compression.*配置
+    private Set<String> compressibleMimeTypes; //未启用压缩时为null
+    private List<Pattern> excludedUserAgents;
 
-    public NettyContainer(DomainSocketAddress address, InetSocketAddress ipAddress, NettyContext servletContext) {
-        this.address = address;
+    public NettyContainer(List<NettyListener> listeners, NettyContext servletContext, NettyServerProperties properties) {
+        checkArgument(!listeners.isEmpty(), "At least one listener is required");
+        this.listeners = ImmutableList.copyOf(listeners);
         this.servletContext = servletContext;
-        this.ipAddress = ipAddress;
+        this.properties = checkNotNull(properties);
+        this.connectionTracker = new ConnectionTracker(properties.getMaxConnections(), properties.getMaxKeepAliveRequests());
+        this.inboundFlowControl = new InboundFlowControl(properties.getReadBufferLowWaterMark(), properties.getReadBufferHighWaterMark());
+        NettyServerProperties.Admission admission = properties.getAdmission();
+        NettyServerProperties.AdaptiveLimit adaptiveLimit = admission.getAdaptiveLimit();
+        AdaptiveConcurrencyLimiter limiter = adaptiveLimit.isEnabled() ? new AdaptiveConcurrencyLimiter(adaptiveLimit.getInitialLimit(),
+                adaptiveLimit.getMinLimit(), adaptiveLimit.getMaxLimit(), adaptiveLimit.getRttTolerance(), adaptiveLimit.getSmoothing()) : null;
+        this.admissionControl = new AdmissionControl(connectionTracker, admission.getMaxQueuedTasks(), admission.getMaxQueueTime(),
+                admission.getRetryAfter(), limiter);
     }
 
 
+    /**
+     * @param executionStrategy 自定义的Servlet执行策略，为null时按配置创建
+     */
+    public void setServletExecutionStrategy(ServletExecutionStrategy executionStrategy) {
+        this.executionStrategy = executionStrategy;
+    }
+
+    /**
+     * @param compression Spring的响应压缩配置，为null或未启用时不压缩
+     */
+    public void setCompression(Compression compression) {
+        this.compression = compression;
+    }
+
     @Override
     public void start() throws WebServerException {
         servletContext.setInitialised(false);
 
-        ServerBootstrap bootstrap = new ServerBootstrap();
-        EventLoopGroup bossGroup;
-        EventLoopGroup workerGroup;
-        Class channel;
-        String os = System.getProperty("os.name").toLowerCase();
-
-        Boolean isPort = ipAddress != null ? true : false;
+        NettyTransport transport = NettyTransport.select();
+        if (transport == NettyTransport.NIO) {
+            log.warn("Native transport is not available, falling back to NIO. epoll: " + Epoll.unavailabilityCause()
+                    + ", kqueue: " + KQueue.unavailabilityCause());
+        }
+        log.info("Using " + transport + " transport for " + listeners);
 
-        if (isPort) {
-            bossGroup = new NioEventLoopGroup(1);
-            workerGroup = new NioEventLoopGroup();
-            channel = NioServerSocketChannel.class;
-        } else {
-            if (os.indexOf("mac") >= 0) {
-                bossGroup = new KQueueEventLoopGroup();
-                workerGroup = new KQueueEventLoopGroup();
-                channel = KQueueServerDomainSocketChannel.class;
+        //每个监听channel独占一个boss线程
+        int acceptors = resolveAcceptors(transport);
+        int serverChannelCount = 0;
+        for (NettyListener listener : listeners) {
+            if (listener.isDomainSocket()) {
+                if (!transport.supportsDomainSocket()) {
+                    throw new WebServerException("Unix domain socket requires epoll or kqueue native transport", null);
+                }
+                serverChannelCount++;
             } else {
-                bossGroup = new EpollEventLoopGroup();
-                workerGroup = new EpollEventLoopGroup();
-                channel = EpollServerDomainSocketChannel.class;
+                serverChannelCount += acceptors;
             }
         }
+        bossGroup = transport.newEventLoopGroup(Math.max(properties.getBossThreads(), serverChannelCount), "netty-boss");
+        workerGroup = transport.newEventLoopGroup(properties.getWorkerThreads(), "netty-worker");
 
-        bootstrap.option(ChannelOption.TCP_NODELAY, true)
-                .option(ChannelOption.SO_REUSEADDR, true)
-                .option(ChannelOption.SO_BACKLOG, 100);
+        if (executionStrategy == null) {
+            executionStrategy = newServletExecutionStrategy();
+        }
+        if (admissionControl.isQueueLimited()) { //统计执行器的排队情况，用于过载判断
+            executionStrategy = new MonitoredExecutionStrategy(executionStrategy);
+        }
+        log.info("Servlet execution strategy: " + executionStrategy.getName());
+
+        NettyServerProperties.StaticResources staticResources = properties.getStaticResources();
+        if (staticResources.isEnabled()) {
+            staticResourceResolver = new StaticResourceResolver(servletContext.getClassLoader(), staticResources.getLocations(),
+                    staticResources.getMaxCachedResourceSize(), staticResources.getCacheMaxSize());
+            log.info("Serving static resources from " + staticResources.getLocations() + " on the IO threads");
+        }
+        if (compression != null && compression.getEnabled()) {
+            compressibleMimeTypes = new HashSet<>();
+            for (String mimeType : compression.getMimeTypes()) {
+                compressibleMimeTypes.add(mimeType.trim().toLowerCase(Locale.ENGLISH));
+            }
+            excludedUserAgents = new ArrayList<>();
+            if (compression.getExcludedUserAgents() != null) {
+                for (String userAgent : compression.getExcludedUserAgents()) {
+                    excludedUserAgents.add(Pattern.compile(userAgent));
+                }
+            }
+            log.info("Response compression enabled for " + compressibleMimeTypes + ", level " + properties.getCompressionLevel());
+        }
 
-        bootstrap.channel(channel).group(bossGroup, workerGroup);
-        log.info("Bootstrap configuration: " + bootstrap.toString());
+        servletContext.setInitialised(true);
+        for (NettyListener listener : listeners) {
+            ServerBootstrap bootstrap = newServerBootstrap(transport, listener, acceptors);
+            log.info("Bootstrap configuration for " + listener + ": " + bootstrap.toString());
+            int count = listener.isDomainSocket() ? 1 : acceptors;
+            SocketAddress address = listener.getAddress();
+            for (int i = 0; i < count; i++) {
+                Channel serverChannel = bind(bootstrap, address);
+                address = serverChannel.localAddress(); //端口为0时，其余acceptor绑定到第一个acceptor实际分配的端口
+            }
+        }
+        log.info(servletContext.getServerInfo() + " started on " + listeners + " with " + acceptors + " tcp acceptor(s)");
+    }
 
-        servletExecutor = new DefaultEventExecutorGroup(50);
-        ChannelFuture future = null;
-        if (isPort) {
-            addChildHandlerForPort(bootstrap);
-            servletContext.setInitialised(true);
-            future = bootstrap.bind(ipAddress).awaitUninterruptibly();
+    private ServerBootstrap newServerBootstrap(NettyTransport transport, NettyListener listener, int acceptors) {
+        ServerBootstrap bootstrap = new ServerBootstrap();
+        if (listener.isDomainSocket()) {
+            bootstrap.channel(transport.serverDomainSocketChannelClass());
         } else {
-            addChildHandlerForDomainSocket(bootstrap);
-            servletContext.setInitialised(true);
-            future = bootstrap.bind(address).awaitUninterruptibly();
+            bootstrap.channel(transport.serverSocketChannelClass());
+            bootstrap.childOption(ChannelOption.TCP_NODELAY, properties.isTcpNoDelay());
+            if (properties.getSoKeepAlive() != null) {
+                bootstrap.childOption(ChannelOption.SO_KEEPALIVE, properties.getSoKeepAlive());
+            }
+            if (acceptors > 1) {
+                bootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+            }
         }
 
+        bootstrap.option(ChannelOption.SO_REUSEADDR, properties.isReuseAddress())
+                .option(ChannelOption.SO_BACKLOG, properties.getBacklog());
+        if (properties.getReceiveBufferSize() != null) {
+            bootstrap.childOption(ChannelOption.SO_RCVBUF, properties.getReceiveBufferSize());
+        }
+        if (properties.getSendBufferSize() != null) {
+            bootstrap.childOption(ChannelOption.SO_SNDBUF, properties.getSendBufferSize());
+        }
+        bootstrap.childOption(ChannelOption.WRITE_BUFFER_WATER_MARK,
+                new WriteBufferWaterMark(properties.getWriteBufferLowWaterMark(), properties.getWriteBufferHighWaterMark()));
+        bootstrap.childOption(ChannelOption.MESSAGE_SIZE_ESTIMATOR, SequencedMessage.SIZE_ESTIMATOR); //Servlet线程的写操作也计入高水位
+
+        bootstrap.group(bossGroup, workerGroup).handler(acceptorCounter);
+        addChildHandler(bootstrap, listener);
+        return bootstrap;
+    }
+
+    private Channel bind(ServerBootstrap bootstrap, SocketAddress localAddress) {
+        ChannelFuture future = bootstrap.bind(localAddress).awaitUninterruptibly();
         Throwable cause = future.cause();
         if (null != cause) {
             throw new WebServerException("Could not start Netty server", cause);
         }
-        log.info(servletContext.getServerInfo() + " started ");
+        serverChannels.add(future.channel());
+        return future.channel();
     }
 
-    private void addChildHandlerForDomainSocket(ServerBootstrap bootstrap) {
+    /**
+     * SO_REUSEPORT只有epoll支持，其他传输层退回单个acceptor
+     */
+    private int resolveAcceptors(NettyTransport transport) {
+        int acceptors = Math.max(1, properties.getAcceptors());
+        if (acceptors > 1 && transport != NettyTransport.EPOLL) {
+            log.warn("SO_REUSEPORT acceptors require epoll transport, using a single acceptor on " + transport);
+            return 1;
+        }
+        return acceptors;
+    }
 
-        bootstrap.childHandler(new ChannelInitializer<DomainSocketChannel>() {
-            @Override
-            protected void initChannel(DomainSocketChannel ch) throws Exception {
-                ChannelPipeline p = ch.pipeline();
-                p.addLast("codec", new HttpServerCodec(4096, 8192, 8192, false)); //HTTP编码解码Handler
-                p.addLast("servletInput", new ServletContentHandler(servletContext)); //处理请求，读入数据，生成Request和Response对象
-                p.addLast(checkNotNull(servletExecutor), "filterChain", new RequestDispatcherHandler(servletContext)); //获取请求分发器，让对应的Servlet处理请求，同时处理404情况
-            }
-        });
+    /**
+     * @return 每个acceptor累计接收的连接数
+     */
+    public Map<String, Long> getAcceptorConnectionCounts() {
+        return acceptorCounter.getConnectionCounts();
     }
 
-    private void addChildHandlerForPort(ServerBootstrap bootstrap) {
+    private void addChildHandler(ServerBootstrap bootstrap, NettyListener listener) {
 
-        bootstrap.childHandler(new ChannelInitializer<SocketChannel>() {
+        bootstrap.childHandler(new ChannelInitializer<Channel>() {
             @Override
-            protected void initChannel(SocketChannel ch) throws Exception {
+            protected void initChannel(Channel ch) throws Exception {
                 ChannelPipeline p = ch.pipeline();
-                p.addLast("codec", new HttpServerCodec(4096, 8192, 8192, false)); //HTTP编码解码Handler
-                p.addLast("servletInput", new ServletContentHandler(servletContext)); //处理请求，读入数据，生成Request和Response对象
-                p.addLast(checkNotNull(servletExecutor), "filterChain", new RequestDispatcherHandler(servletContext)); //获取请求分发器，让对应的Servlet处理请求，同时处理404情况
+                ConnectionTimeoutHandler timeouts = new ConnectionTimeoutHandler(connectionTracker, properties.getIdleTimeout(),
+                        properties.getRequestHeaderTimeout(), properties.getReadTimeout(), properties.getWriteTimeout());
+                p.addLast("readActivity", timeouts.readActivityHandler()); //在解码器之前观察请求头的第一个字节
+                p.addLast("codec", newHttpServerCodec(listener.getCodec())); //HTTP编码解码Handler
+                p.addLast("timeouts", timeouts); //空闲、请求头、请求体和写响应超时
+                if (staticResourceResolver != null) { //静态资源直接在IO线程上响应
+                    p.addLast("staticResources", new StaticResourceHandler(staticResourceResolver, servletContext.getContextPath(),
+                            connectionTracker, properties.getStaticResources().getCachePeriod(), properties.getStaticResources().isPrecompressed()));
+                }
+                if (compressibleMimeTypes != null) { //在静态资源之后，只压缩Servlet的响应
+                    p.addLast("compressor", new ResponseCompressionHandler(properties.getCompressionLevel(), compressibleMimeTypes,
+                            excludedUserAgents, (int) compression.getMinResponseSize().toBytes()));
+                }
+                p.addLast("sequencer", new ResponseSequencer()); //pipelining下按请求顺序写出响应
+                p.addLast("servletInput", new ServletContentHandler(servletContext, executionStrategy, connectionTracker,
+                        inboundFlowControl, admissionControl, properties)); //处理请求，读入数据，生成Request和Response对象
+                p.addLast("filterChain", new RequestDispatcherHandler(servletContext, executionStrategy)); //获取请求分发器，交给执行策略让对应的Servlet处理请求，同时处理404情况
             }
         });
     }
 
+    private ServletExecutionStrategy newServletExecutionStrategy() {
+        NettyServerProperties.Executor executor = properties.getExecutor();
+        switch (executor.getStrategy()) {
+            case THREAD_POOL:
+                return newThreadPoolExecutionStrategy(executor);
+            case FORK_JOIN:
+                return new ForkJoinExecutionStrategy(executor.getThreads());
+            case VIRTUAL:
+                if (VirtualThreadExecutionStrategy.isSupported()) {
+                    return new VirtualThreadExecutionStrategy();
+                }
+                log.warn("Virtual threads are not supported by Java " + System.getProperty("java.version") + ", falling back to thread-pool");
+                return newThreadPoolExecutionStrategy(executor);
+            default:
+                return new PinnedExecutionStrategy(executor.getThreads());
+        }
+    }
+
+    private ServletExecutionStrategy newThreadPoolExecutionStrategy(NettyServerProperties.Executor executor) {
+        int coreThreads = executor.getCoreThreads() != null ? executor.getCoreThreads() : executor.getThreads();
+        return new ThreadPoolExecutionStrategy(coreThreads, executor.getThreads(), executor.getKeepAlive().toMillis(),
+                executor.getQueueCapacity());
+    }
+
+    private HttpServerCodec newHttpServerCodec(NettyServerProperties.Codec codec) {
+        return new HttpServerCodec(codec.getMaxInitialLineLength(), codec.getMaxHeaderSize(),
+                codec.getMaxChunkSize(), codec.isValidateHeaders());
+    }
+
+    /**
+     * @return 正在处理的请求数
+     */
+    public int getInFlightRequests() {
+        return connectionTracker.getInFlightRequests();
+    }
+
+    /**
+     * @return 当前打开的连接数
+     */
+    public int getOpenConnections() {
+        return connectionTracker.getOpenConnections();
+    }
+
+    /**
+     * @return 按原因统计的累计关闭连接数
+     */
+    public Map<ConnectionCloseReason, Long> getClosedConnections() {
+        return connectionTracker.getClosedConnections();
+    }
+
+    /**
+     * @return 所有Servlet执行器中排队未执行的任务数，未启用过载保护时为0
+     */
+    public int getQueuedServletTasks() {
+        return executionStrategy instanceof MonitoredExecutionStrategy ? ((MonitoredExecutionStrategy) executionStrategy).getQueuedTasks() : 0;
+    }
+
     /**
-     * 优雅地关闭各种资源
+     * @return 因执行器过载被拒绝的累计请求数
+     */
+    public long getRejectedRequests() {
+        return admissionControl.getRejectedRequests();
+    }
+
+    /**
+     * @return 自适应并发上限的当前上限、耗时和接收/拒绝计数，未启用时为null
+     */
+    public AdaptiveConcurrencyLimiter getConcurrencyLimiter() {
+        return admissionControl.getLimiter();
+    }
+
+    /**
+     * @return 连接因请求体积压超过高水位而被暂停读取的累计次数
+     */
+    public long getReadThrottleCount() {
+        return inboundFlowControl.getThrottleCount();
+    }
+
+    /**
+     * 优雅地关闭各种资源：先停止接收新连接，再等待正在处理的请求完成，最后关闭线程
      *
      * @throws WebServerException
      */
     @Override
     public void stop() throws WebServerException {
-        log.info("Embedded Netty Servlet Container is now shuting down.");
+        log.info("Embedded Netty Servlet Container is now shuting down. Accepted connections: " + getAcceptorConnectionCounts()
+                + ", in-flight requests: " + getInFlightRequests() + ", read throttles: " + getReadThrottleCount()
+                + ", rejected requests: " + getRejectedRequests() + ", closed connections: " + getClosedConnections()
+                + ", dispatcher cache hits/misses: " + servletContext.getDispatcherCacheHits() + "/" + servletContext.getDispatcherCacheMisses()
+                + (getConcurrencyLimiter() != null ? ", concurrency limit: " + getConcurrencyLimiter() : ""));
+        long deadline = System.nanoTime() + properties.getShutdownTimeout().toNanos();
         try {
-            if (null != bossGroup) {
-                bossGroup.shutdownGracefully().await();
+            for (Channel serverChannel : serverChannels) {
+                serverChannel.close().awaitUninterruptibly();
             }
+            serverChannels.clear();
+            connectionTracker.drain(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (null != executionStrategy) {
+                executionStrategy.shutdown();
+                executionStrategy.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            }
+            //连接都已关闭，不需要静默期
             if (null != workerGroup) {
-                workerGroup.shutdownGracefully().await();
+                workerGroup.shutdownGracefully(0, 5, TimeUnit.SECONDS).await();
+            }
+            if (null != bossGroup) {
+                bossGroup.shutdownGracefully(0, 5, TimeUnit.SECONDS).await();
             }
-            if (null != servletExecutor) {
-                servletExecutor.shutdownGracefully().await();
+            if (null != staticResourceResolver) {
+                staticResourceResolver.close();
             }
         } catch (InterruptedException e) {
             throw new WebServerException("Container stop interrupted", e);
         }
     }
 
+    /**
+     * @return 实际监听的TCP端口，只监听domain socket时返回0
+     */
     @Override
     public int getPort() {
+        for (Channel channel : serverChannels) {
+            if (channel.localAddress() instanceof InetSocketAddress) {
+                return ((InetSocketAddress) channel.localAddress()).getPort();
+            }
+        }
         return 0;
     }
 }
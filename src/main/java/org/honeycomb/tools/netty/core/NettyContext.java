@@ -3,21 +3,25 @@ package org.honeycomb.tools.netty.core;
 import com.google.common.collect.ImmutableMap;
 import org.honeycomb.tools.netty.registration.NettyFilterRegistration;
 import org.honeycomb.tools.netty.registration.NettyServletRegistration;
+import org.honeycomb.tools.netty.resource.ResourceCache;
 import org.honeycomb.tools.netty.session.NettySessionManager;
 import org.honeycomb.tools.netty.utils.MimeTypeUtil;
 import org.honeycomb.tools.netty.utils.RequestUrlPatternMapper;
+import org.honeycomb.tools.netty.utils.ServletRoute;
+import org.honeycomb.tools.netty.utils.UrlPathUtil;
+import org.honeycomb.tools.netty.utils.UrlPatternRouter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.servlet.*;
 import javax.servlet.descriptor.JspConfigDescriptor;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
@@ -34,12 +38,16 @@ public class NettyContext implements ServletContext {
     private final ClassLoader classLoader;
     private final String serverInfo;
     private volatile boolean initialized;
-    private RequestUrlPatternMapper servletUrlPatternMapper;
+    private final RequestUrlPatternMapper servletUrlPatternMapper;
     private NettySessionManager sessionManager;
-
-    private final Map<String, NettyServletRegistration> servlets = new HashMap<>();
-    private final Map<String, NettyFilterRegistration> filters = new HashMap<>();
-    private final Map<String, String> servletMappings = new HashMap<>();
+    private final ResourceCache resourceCache;
+    private final FilterMappings filterMappings = new FilterMappings();
+    private final Object routingLock = new Object(); //保证路由表快照按修改顺序发布
+    private volatile DispatcherCache dispatcherCache; //当前的路由表快照和它的缓存，请求线程只读一次
+
+    private final Map<String, NettyServletRegistration> servlets = new ConcurrentHashMap<>(); //Servlet可以在运行时注册，与请求线程并发访问
+    private final Map<String, NettyFilterRegistration> filters = new ConcurrentHashMap<>();
+    private final Map<String, String> servletMappings = new ConcurrentHashMap<>(); //url pattern -> Servlet名称，与路由表同步修改
     private final Hashtable<String, Object> attributes = new Hashtable<>();
 
     /**
@@ -48,15 +56,20 @@ public class NettyContext implements ServletContext {
      * @param contextPath contextPath
      * @param classLoader classLoader
      * @param serverInfo  服务器信息，写在响应的server响应头字段
+     * @param resourceCache getResource/getResourceAsStream的缓存
+     * @param dispatcherCacheSize 缓存的请求路径数，0表示不缓存
      */
-    public NettyContext(String contextPath, ClassLoader classLoader, String serverInfo) {
+    public NettyContext(String contextPath, ClassLoader classLoader, String serverInfo, ResourceCache resourceCache,
+                        int dispatcherCacheSize) {
         if(contextPath.endsWith("/")){
             contextPath = contextPath.substring(0, contextPath.length() -1);
         }
         this.contextPath = contextPath;
         this.classLoader = classLoader;
         this.serverInfo = serverInfo;
-        this.servletUrlPatternMapper = new RequestUrlPatternMapper(contextPath);
+        this.resourceCache = checkNotNull(resourceCache);
+        this.servletUrlPatternMapper = new RequestUrlPatternMapper();
+        this.dispatcherCache = new DispatcherCache(servletUrlPatternMapper.getRouter(), dispatcherCacheSize);
         this.sessionManager = new NettySessionManager(this);
     }
 
@@ -76,15 +89,71 @@ public class NettyContext implements ServletContext {
         checkState(!isInitialised(), "This method can not be called before the context has been initialised");
     }
 
+    /**
+     * 可以在Context初始化之后调用，新的路由表在调用线程上编译好后整体替换，不影响正在处理的请求
+     */
     public void addServletMapping(String urlPattern, String name, Servlet servlet) throws ServletException {
+        checkNotNull(name);
+        synchronized (routingLock) {
+            publishRouting(servletUrlPatternMapper.addServlet(urlPattern, servlet, name));
+            servletMappings.put(urlPattern, name);
+        }
+    }
+
+    /**
+     * 可以在Context初始化之后调用，已经开始处理的请求仍然使用删除前的映射
+     */
+    public void removeServletMapping(String urlPattern) {
+        synchronized (routingLock) {
+            publishRouting(servletUrlPatternMapper.removeServlet(urlPattern));
+            servletMappings.remove(urlPattern);
+        }
+    }
+
+    /**
+     * @return 当前映射到该Servlet的url pattern，removeServletMapping之后立即反映
+     */
+    public Collection<String> getServletMappings(String servletName) {
+        checkNotNull(servletName);
+        List<String> urlPatterns = new ArrayList<>();
+        for (Map.Entry<String, String> mapping : servletMappings.entrySet()) {
+            if (servletName.equals(mapping.getValue())) {
+                urlPatterns.add(mapping.getKey());
+            }
+        }
+        return urlPatterns;
+    }
+
+    public void addFilterMapping(NettyFilterRegistration registration, EnumSet<DispatcherType> dispatcherTypes, boolean isMatchAfter,
+                                 String urlPattern) {
         checkNotInitialised();
-        servletMappings.put(urlPattern, checkNotNull(name));
-        servletUrlPatternMapper.addServlet(urlPattern, servlet, name);
+        filterMappings.addUrlPatternMapping(registration, dispatcherTypes, isMatchAfter, urlPattern);
+        synchronized (routingLock) {
+            publishRouting(servletUrlPatternMapper.getRouter()); //缓存的NettyRequestDispatcher保存了过滤器数组
+        }
     }
 
-    public void addFilterMapping(EnumSet<DispatcherType> dispatcherTypes, boolean isMatchAfter, String urlPattern) {
+    public void addFilterServletNameMapping(NettyFilterRegistration registration, EnumSet<DispatcherType> dispatcherTypes,
+                                            boolean isMatchAfter, String servletName) {
         checkNotInitialised();
-        //TODO 过滤器的urlPatter解析
+        filterMappings.addServletNameMapping(registration, dispatcherTypes, isMatchAfter, servletName);
+        synchronized (routingLock) {
+            publishRouting(servletUrlPatternMapper.getRouter());
+        }
+    }
+
+    /**
+     * 发布新的路由表快照，缓存随快照一起替换。调用时持有routingLock
+     */
+    private void publishRouting(UrlPatternRouter router) {
+        dispatcherCache = dispatcherCache.withRouter(router);
+    }
+
+    /**
+     * @return 预先编译好的过滤器数组，多个请求共享
+     */
+    Filter[] getFilters(String servletName, DispatcherType dispatcherType, String path) throws ServletException {
+        return filterMappings.getFilters(servletName, dispatcherType, path);
     }
 
     /**
@@ -157,58 +226,95 @@ public class NettyContext implements ServletContext {
     public URL getResource(String path) throws MalformedURLException {
         if (!path.startsWith("/"))
             throw new MalformedURLException("Path '" + path + "' does not start with '/'");
-        URL url = new URL(getClassLoader().getResource(""), path.substring(1));
-        try {
-            url.openStream();
-        } catch(FileNotFoundException e){
-            url = new URL(getClassLoader().getResource(""), "static/" + path.substring(1));
-            try {
-                url.openStream();
-            } catch (IOException e1) {
-                log.error("Throwing exception when getting InputStream of " + path + " in /static", e1);
-                url = null;
-            }
-        } catch (Throwable t) {
-            log.error("Throwing exception when getting InputStream of " + path + " in /", t);
-            url = null;
+        return resourceCache.get(path, this::findResource).getUrl();
+    }
+
+    /**
+     * 先在classpath根目录下查找，找不到再到static/下查找
+     */
+    private URL findResource(String path) {
+        URL url = getClassLoader().getResource(path.substring(1));
+        if (url == null) {
+            url = getClassLoader().getResource("static/" + path.substring(1));
         }
         return url;
     }
 
     @Override
     public InputStream getResourceAsStream(String path) {
+        if (!path.startsWith("/")) {
+            return null;
+        }
         try {
-            return getResource(path).openStream();
+            return resourceCache.get(path, this::findResource).openStream();
         } catch (IOException e) {
             log.error(e.getMessage(), e);
             return null;
         }
     }
 
+    public ResourceCache getResourceCache() {
+        return resourceCache;
+    }
+
+    /**
+     * 路径先规范化再查缓存和路由，/a//b、/a/./b和/a/%62都与/a/b使用同一个分发器
+     *
+     * @param path 以/开头的路径，可以带contextPath和查询字符串，未解码
+     * @return 没有匹配的Servlet或者路径不合法时为null
+     */
     @Override
     public RequestDispatcher getRequestDispatcher(String path) {
-        String servletName = servletUrlPatternMapper.getServletNameByRequestURI(path);
-        /*String servletName = servletMappings.get(path);
-        if (servletName == null) {
-            servletName = servletMappings.get("/");
-        }*/
-        Servlet servlet;
-        try {
-            servlet = null == servletName ? null : servlets.get(servletName).getServlet();
-            if (servlet == null) {
-                return null;
-            }
-            //TODO 过滤器的urlPatter解析
-            List<Filter> allNeedFilters = new ArrayList<>();
-            for (NettyFilterRegistration registration : this.filters.values()) {
-                allNeedFilters.add(registration.getFilter());
-            }
-            FilterChain filterChain = new NettyFilterChain(servlet, allNeedFilters);
-            return new NettyRequestDispatcher(this, filterChain);
-        } catch (ServletException e) {
-            log.error("Throwing exception when getting Filter from NettyFilterRegistration of path " + path, e);
+        if (path == null || !path.startsWith("/")) {
             return null;
         }
+        int queryInx = path.indexOf('?');
+        if (queryInx > -1) {
+            path = path.substring(0, queryInx);
+        }
+        path = UrlPathUtil.normalize(path);
+        if (path == null) {
+            return null;
+        }
+        DispatcherCache routing = dispatcherCache; //整个查找过程使用同一个快照
+        NettyRequestDispatcher dispatcher = routing.get(path);
+        if (dispatcher != null) {
+            return dispatcher;
+        }
+        String relativePath = relativePath(path);
+        ServletRoute route = routing.route(relativePath);
+        if (route == null) {
+            return null;
+        }
+        dispatcher = new NettyRequestDispatcher(this, route, relativePath);
+        routing.put(path, dispatcher);
+        return dispatcher;
+    }
+
+    /**
+     * @return getRequestDispatcher缓存命中的次数
+     */
+    public long getDispatcherCacheHits() {
+        return dispatcherCache.getHits();
+    }
+
+    /**
+     * @return getRequestDispatcher缓存未命中的次数，包括没有匹配Servlet的路径
+     */
+    public long getDispatcherCacheMisses() {
+        return dispatcherCache.getMisses();
+    }
+
+    /**
+     * @param path 已经去掉查询字符串并规范化
+     * @return 去掉contextPath、以/开头的路径
+     */
+    private String relativePath(String path) {
+        if (!contextPath.isEmpty() && path.startsWith(contextPath)
+                && (path.length() == contextPath.length() || path.charAt(contextPath.length()) == '/')) {
+            path = path.substring(contextPath.length());
+        }
+        return path.isEmpty() ? "/" : path;
     }
 
     @Override
@@ -218,7 +324,8 @@ public class NettyContext implements ServletContext {
 
     @Override
     public Servlet getServlet(String name) throws ServletException {
-        return servlets.get(name).getServlet();
+        NettyServletRegistration registration = servlets.get(name);
+        return registration == null ? null : registration.getServlet();
     }
 
     @Override
@@ -2,7 +2,6 @@ package org.honeycomb.tools.netty.core;
 
 import javax.servlet.*;
 import java.io.IOException;
-import java.util.Iterator;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -12,14 +11,15 @@ import static com.google.common.base.Preconditions.checkNotNull;
  */
 public class NettyFilterChain implements FilterChain {
     /**
-     * 考虑到每个请求只有一个线程处理，而且ServletContext在每次请求时都会new 一个SimpleFilterChain对象
-     * 所以这里把过滤器链的Iterator作为FilterChain的私有变量，没有线程安全问题
+     * 过滤器数组由FilterMappings预先编译，多个请求共享，不能修改；
+     * 每个请求new一个FilterChain对象，只在处理请求的线程上推进下标，没有线程安全问题
      */
-    private final Iterator<Filter> filterIterator;
+    private final Filter[] filters;
     private final Servlet servlet;
+    private int position;
 
-    public NettyFilterChain(Servlet servlet, Iterable<Filter> filters) throws ServletException {
-        this.filterIterator = checkNotNull(filters).iterator();
+    public NettyFilterChain(Servlet servlet, Filter[] filters) {
+        this.filters = checkNotNull(filters);
         this.servlet = checkNotNull(servlet);
     }
 
@@ -30,8 +30,8 @@ public class NettyFilterChain implements FilterChain {
      */
     @Override
     public void doFilter(ServletRequest request, ServletResponse response) throws IOException, ServletException {
-        if (filterIterator.hasNext()) {
-            Filter filter = filterIterator.next();
+        if (position < filters.length) {
+            Filter filter = filters[position++];
             filter.doFilter(request, response, this);
         } else {
             servlet.service(request, response);
@@ -0,0 +1,50 @@
+package org.honeycomb.tools.netty.core;
+
+import io.netty.channel.unix.DomainSocketAddress;
+import org.honeycomb.tools.netty.bootstrap.NettyServerProperties;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * 容器的一个监听地址及其Pipeline配置，同一容器的所有监听共享worker线程和Servlet执行器
+ * <p>
+ * User: luluful
+ * Date: 10/18/26
+ */
+public class NettyListener {
+    private final SocketAddress address; //监听地址
+    private final NettyServerProperties.Codec codec; //该监听的HTTP解码限制
+
+    private NettyListener(SocketAddress address, NettyServerProperties.Codec codec) {
+        this.address = checkNotNull(address);
+        this.codec = checkNotNull(codec);
+    }
+
+    public static NettyListener tcp(InetSocketAddress address, NettyServerProperties.Codec codec) {
+        return new NettyListener(address, codec);
+    }
+
+    public static NettyListener domainSocket(DomainSocketAddress address, NettyServerProperties.Codec codec) {
+        return new NettyListener(address, codec);
+    }
+
+    public SocketAddress getAddress() {
+        return address;
+    }
+
+    public NettyServerProperties.Codec getCodec() {
+        return codec;
+    }
+
+    public boolean isDomainSocket() {
+        return address instanceof DomainSocketAddress;
+    }
+
+    @Override
+    public String toString() {
+        return isDomainSocket() ? "domain socket " + ((DomainSocketAddress) address).path() : "tcp port " + ((InetSocketAddress) address).getPort();
+    }
+}
@@ -1,21 +1,38 @@
 package org.honeycomb.tools.netty.core;
 
 import org.honeycomb.tools.netty.request.NettyHttpServletRequest;
+import org.honeycomb.tools.netty.utils.ServletRoute;
 
 import javax.servlet.*;
 import java.io.IOException;
 
 /**
+ * 路由结果确定后不再变化，可以被DispatcherCache缓存，由多个请求共享
+ * <p>
  * User: luluful
  * Date: 4/8/19
  */
 public class NettyRequestDispatcher implements RequestDispatcher {
-    private final ServletContext context;
-    private final FilterChain filterChain;
+    private final NettyContext context;
+    private final ServletRoute route;
+    private final String path; //去掉contextPath和查询字符串的路径，用于匹配Filter
+    private final String servletPath;
+    private final String pathInfo;
+    private volatile Filter[] requestFilters; //REQUEST类型的过滤器，第一次使用时从FilterMappings获取
 
-    NettyRequestDispatcher(ServletContext context, FilterChain filterChain) {
+    NettyRequestDispatcher(NettyContext context, ServletRoute route, String path) {
         this.context = context;
-        this.filterChain = filterChain;
+        this.route = route;
+        this.path = path;
+        this.servletPath = route.getServletPath(path);
+        this.pathInfo = route.getPathInfo(path);
+    }
+
+    /**
+     * @return 路由时匹配的映射
+     */
+    ServletRoute getRoute() {
+        return route;
     }
 
     @Override
@@ -30,8 +47,28 @@ public class NettyRequestDispatcher implements RequestDispatcher {
         // TODO implement
     }
 
-    void dispatch(ServletRequest request, ServletResponse response) throws ServletException, IOException {
-        request.setAttribute(NettyHttpServletRequest.DISPATCHER_TYPE, DispatcherType.ASYNC);
-        filterChain.doFilter(request, response);
+    /**
+     * 经过与Servlet、DispatcherType和路径匹配的过滤器，最后交给Servlet处理
+     *
+     * @param dispatcherType 新请求为REQUEST，AsyncContext.dispatch为ASYNC
+     */
+    void dispatch(ServletRequest request, ServletResponse response, DispatcherType dispatcherType) throws ServletException, IOException {
+        request.setAttribute(NettyHttpServletRequest.DISPATCHER_TYPE, dispatcherType);
+        if (request instanceof NettyHttpServletRequest) {
+            ((NettyHttpServletRequest) request).setServletPath(servletPath, pathInfo);
+        }
+        new NettyFilterChain(route.getServlet(), getFilters(dispatcherType)).doFilter(request, response);
+    }
+
+    private Filter[] getFilters(DispatcherType dispatcherType) throws ServletException {
+        if (dispatcherType != DispatcherType.REQUEST) {
+            return context.getFilters(route.getServletName(), dispatcherType, path);
+        }
+        Filter[] filters = requestFilters;
+        if (filters == null) {
+            filters = context.getFilters(route.getServletName(), dispatcherType, path);
+            requestFilters = filters;
+        }
+        return filters;
     }
 }
@@ -0,0 +1,124 @@
+package org.honeycomb.tools.netty.core;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerDomainSocketChannel;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.kqueue.KQueue;
+import io.netty.channel.kqueue.KQueueEventLoopGroup;
+import io.netty.channel.kqueue.KQueueServerDomainSocketChannel;
+import io.netty.channel.kqueue.KQueueServerSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+/**
+ * 传输层实现：Linux下使用epoll，BSD/macOS下使用kqueue，native库不可用时退回NIO
+ * <p>
+ * 每个枚举值只在被选中后才会加载对应的native类，所以在不支持的平台上引用是安全的
+ * <p>
+ * User: luluful
+ * Date: 10/18/26
+ */
+public enum NettyTransport {
+    EPOLL {
+        @Override
+        public boolean isAvailable() {
+            return Epoll.isAvailable();
+        }
+
+        @Override
+        public EventLoopGroup newEventLoopGroup(int nThreads, String poolName) {
+            return new EpollEventLoopGroup(nThreads, new DefaultThreadFactory(poolName));
+        }
+
+        @Override
+        public Class<? extends ServerChannel> serverSocketChannelClass() {
+            return EpollServerSocketChannel.class;
+        }
+
+        @Override
+        public Class<? extends ServerChannel> serverDomainSocketChannelClass() {
+            return EpollServerDomainSocketChannel.class;
+        }
+    },
+    KQUEUE {
+        @Override
+        public boolean isAvailable() {
+            return KQueue.isAvailable();
+        }
+
+        @Override
+        public EventLoopGroup newEventLoopGroup(int nThreads, String poolName) {
+            return new KQueueEventLoopGroup(nThreads, new DefaultThreadFactory(poolName));
+        }
+
+        @Override
+        public Class<? extends ServerChannel> serverSocketChannelClass() {
+            return KQueueServerSocketChannel.class;
+        }
+
+        @Override
+        public Class<? extends ServerChannel> serverDomainSocketChannelClass() {
+            return KQueueServerDomainSocketChannel.class;
+        }
+    },
+    NIO {
+        @Override
+        public boolean isAvailable() {
+            return true;
+        }
+
+        @Override
+        public EventLoopGroup newEventLoopGroup(int nThreads, String poolName) {
+            return new NioEventLoopGroup(nThreads, new DefaultThreadFactory(poolName));
+        }
+
+        @Override
+        public Class<? extends ServerChannel> serverSocketChannelClass() {
+            return NioServerSocketChannel.class;
+        }
+
+        /**
+         * NIO不支持unix domain socket
+         */
+        @Override
+        public Class<? extends ServerChannel> serverDomainSocketChannelClass() {
+            return null;
+        }
+    };
+
+    /**
+     * @return 当前平台是否能加载该传输层的native库
+     */
+    public abstract boolean isAvailable();
+
+    /**
+     * @param nThreads 线程数，0表示使用Netty默认值（CPU核数*2）
+     * @param poolName 线程名前缀
+     */
+    public abstract EventLoopGroup newEventLoopGroup(int nThreads, String poolName);
+
+    public abstract Class<? extends ServerChannel> serverSocketChannelClass();
+
+    public abstract Class<? extends ServerChannel> serverDomainSocketChannelClass();
+
+    public boolean supportsDomainSocket() {
+        return serverDomainSocketChannelClass() != null;
+    }
+
+    /**
+     * 按epoll、kqueue、NIO的顺序选择第一个可用的传输层
+     */
+    public static NettyTransport select() {
+        if (EPOLL.isAvailable()) {
+            return EPOLL;
+        }
+        if (KQUEUE.isAvailable()) {
+            return KQUEUE;
+        }
+        return NIO;
+    }
+}
@@ -5,9 +5,13 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.honeycomb.tools.netty.executor.ServletExecutionStrategy;
 import org.honeycomb.tools.netty.request.NettyHttpServletRequest;
+import org.honeycomb.tools.netty.utils.UrlPathUtil;
 
+import javax.servlet.DispatcherType;
 import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.RejectedExecutionException;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -19,9 +23,11 @@ import static com.google.common.base.Preconditions.checkNotNull;
 class RequestDispatcherHandler extends SimpleChannelInboundHandler<NettyHttpServletRequest> {
     private final Log logger = LogFactory.getLog(getClass());
     private final NettyContext context;
+    private final ServletExecutionStrategy executionStrategy;
 
-    RequestDispatcherHandler(NettyContext context) {
+    RequestDispatcherHandler(NettyContext context, ServletExecutionStrategy executionStrategy) {
         this.context = checkNotNull(context);
+        this.executionStrategy = checkNotNull(executionStrategy);
     }
 
     @Override
@@ -29,26 +35,46 @@ class RequestDispatcherHandler extends SimpleChannelInboundHandler<NettyHttpServ
         ctx.flush();
     }
 
+    /**
+     * 在IO线程上把请求交给执行策略，执行器拒绝时直接返回503
+     */
     @Override
     protected void channelRead0(ChannelHandlerContext ctx, NettyHttpServletRequest request) throws Exception {
+        try {
+            executionStrategy.executor(ctx.channel()).execute(() -> dispatch(ctx, request));
+        } catch (RejectedExecutionException e) {
+            HttpServletResponse servletResponse = (HttpServletResponse) request.getServletResponse();
+            servletResponse.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            servletResponse.getOutputStream().close();
+        }
+    }
+
+    private void dispatch(ChannelHandlerContext ctx, NettyHttpServletRequest request) {
         HttpServletResponse servletResponse = (HttpServletResponse) request.getServletResponse();
         try {
-            NettyRequestDispatcher dispatcher = (NettyRequestDispatcher) context.getRequestDispatcher(request.getRequestURI());
-            if (dispatcher == null) {
-                servletResponse.sendError(404);
-                return;
-            }
-            dispatcher.dispatch(request, servletResponse);
-        } finally {
-            if (!request.isAsyncStarted()) {
-                servletResponse.getOutputStream().close();
+            try {
+                NettyRequestDispatcher dispatcher = (NettyRequestDispatcher) context.getRequestDispatcher(request.getRequestURI());
+                if (dispatcher == null) {
+                    //路径不合法（%编码错误、编码的/或\、..越过根路径）返回400，合法但没有匹配的Servlet返回404
+                    servletResponse.sendError(UrlPathUtil.normalize(request.getRequestURI()) == null
+                            ? HttpServletResponse.SC_BAD_REQUEST : HttpServletResponse.SC_NOT_FOUND);
+                    return;
+                }
+                dispatcher.dispatch(request, servletResponse, DispatcherType.REQUEST);
+            } finally {
+                if (!request.isAsyncStarted()) {
+                    servletResponse.getOutputStream().close();
+                }
             }
+        } catch (Throwable cause) {
+            logger.error("Unexpected exception caught during request", cause);
+            ConnectionCloseReason.close(ctx.channel(), ConnectionCloseReason.ERROR);
         }
     }
 
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
         logger.error("Unexpected exception caught during request", cause);
-        ctx.close();
+        ConnectionCloseReason.close(ctx.channel(), ConnectionCloseReason.ERROR);
     }
 }
@@ -0,0 +1,87 @@
+package org.honeycomb.tools.netty.core;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.*;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * 按Spring的server.compression.*配置在IO线程上做gzip/deflate压缩：
+ * 只压缩白名单中的Content-Type，已知长度小于下限的响应、被排除的User-Agent和已经设置了Content-Encoding的响应不压缩
+ * <p>
+ * 放在StaticResourceHandler之后，静态资源的响应（包括FileRegion）不经过这里，由预压缩文件处理
+ * <p>
+ * User: luluful
+ * Date: 10/18/26
+ */
+class ResponseCompressionHandler extends HttpContentCompressor {
+    private static final int WINDOW_BITS = 15;
+    private static final int MEM_LEVEL = 8;
+
+    private final Set<String> mimeTypes; //小写，不含参数
+    private final List<Pattern> excludedUserAgents;
+    private final long minResponseSize;
+    private final Queue<String> userAgentQueue = new ArrayDeque<>(); //与父类的Accept-Encoding队列一一对应
+    private String userAgent; //当前响应对应请求的User-Agent
+
+    ResponseCompressionHandler(int compressionLevel, Set<String> mimeTypes, List<Pattern> excludedUserAgents, int minResponseSize) {
+        super(compressionLevel, WINDOW_BITS, MEM_LEVEL, minResponseSize);
+        this.mimeTypes = mimeTypes;
+        this.excludedUserAgents = excludedUserAgents;
+        this.minResponseSize = minResponseSize;
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, HttpRequest msg, List<Object> out) throws Exception {
+        userAgentQueue.add(msg.headers().get(HttpHeaderNames.USER_AGENT, ""));
+        super.decode(ctx, msg, out);
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, HttpObject msg, List<Object> out) throws Exception {
+        if (msg instanceof HttpResponse && ((HttpResponse) msg).status().code() != HttpResponseStatus.CONTINUE.code()) {
+            userAgent = userAgentQueue.poll(); //100-continue之后还有真正的响应，父类同样不出队
+        }
+        super.encode(ctx, msg, out);
+    }
+
+    @Override
+    protected Result beginEncode(HttpResponse response, String acceptEncoding) throws Exception {
+        HttpHeaders headers = response.headers();
+        if (headers.contains(HttpHeaderNames.CONTENT_ENCODING) || !isCompressibleType(headers.get(HttpHeaderNames.CONTENT_TYPE))
+                || isExcludedUserAgent() || headers.getInt(HttpHeaderNames.CONTENT_LENGTH, Integer.MAX_VALUE) < minResponseSize) {
+            return null;
+        }
+        Result result = super.beginEncode(response, acceptEncoding);
+        if (result != null) {
+            headers.add(HttpHeaderNames.VARY, HttpHeaderNames.ACCEPT_ENCODING);
+        }
+        return result;
+    }
+
+    private boolean isCompressibleType(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        int semicolon = contentType.indexOf(';');
+        String mimeType = (semicolon < 0 ? contentType : contentType.substring(0, semicolon)).trim().toLowerCase(Locale.ENGLISH);
+        return mimeTypes.contains(mimeType);
+    }
+
+    private boolean isExcludedUserAgent() {
+        if (userAgent == null || userAgent.isEmpty()) {
+            return false;
+        }
+        for (Pattern pattern : excludedUserAgents) {
+            if (pattern.matcher(userAgent).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
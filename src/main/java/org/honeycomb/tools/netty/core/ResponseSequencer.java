@@ -0,0 +1,124 @@
+package org.honeycomb.tools.netty.core;
+
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpStatusClass;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.ReferenceCountUtil;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * 按请求到达的顺序写出响应：HTTP pipelining下多个请求可以在执行器上并发处理，
+ * 序号靠后的响应先写时暂存起来，等前面的响应写完最后一个HttpContent后再依次写出
+ * <p>
+ * 每个连接一个实例，只在IO线程上访问
+ * <p>
+ * User: luluful
+ * Date: 10/18/26
+ */
+class ResponseSequencer extends ChannelDuplexHandler {
+    private int nextSequence; //当前允许写出的响应序号
+    private final Map<Integer, Queue<PendingWrite>> pending = new HashMap<>(); //序号靠后、暂存的写操作
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (!(msg instanceof SequencedMessage)) {
+            ctx.write(msg, promise);
+            return;
+        }
+        SequencedMessage sequenced = (SequencedMessage) msg;
+        Object message = sequenced.getMessage(); //被包装消息的所有权转移给这里，包装对象不释放
+        int sequence = sequenced.getSequence();
+        if (sequence == nextSequence) {
+            writeInOrder(ctx, message, promise);
+        } else {
+            pending.computeIfAbsent(sequence, k -> new ArrayDeque<>()).add(new PendingWrite(message, promise));
+        }
+    }
+
+    private void writeInOrder(ChannelHandlerContext ctx, Object message, ChannelPromise promise) {
+        ctx.write(message, promise);
+        if (isResponseEnd(message)) {
+            nextSequence++;
+            writePending(ctx);
+        }
+    }
+
+    /**
+     * 写出已经轮到的暂存响应，遇到还没写完的响应时停下，它后续的写操作会直接写出
+     */
+    private void writePending(ChannelHandlerContext ctx) {
+        boolean written = false;
+        Queue<PendingWrite> queue;
+        while ((queue = pending.get(nextSequence)) != null) {
+            PendingWrite write = queue.poll();
+            if (write == null) {
+                pending.remove(nextSequence);
+                break;
+            }
+            written = true;
+            ctx.write(write.message, write.promise);
+            if (isResponseEnd(write.message)) {
+                pending.remove(nextSequence);
+                nextSequence++;
+            }
+        }
+        if (written) {
+            ctx.flush();
+        }
+    }
+
+    /**
+     * 最后一个HttpContent（包括FullHttpResponse）表示响应结束，100-continue之类的临时响应除外
+     */
+    private static boolean isResponseEnd(Object message) {
+        if (!(message instanceof LastHttpContent)) {
+            return false;
+        }
+        return !(message instanceof HttpResponse) || ((HttpResponse) message).status().codeClass() != HttpStatusClass.INFORMATIONAL;
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        releasePending();
+        ctx.fireChannelInactive();
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        releasePending();
+    }
+
+    private void releasePending() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        ClosedChannelException cause = new ClosedChannelException();
+        for (Queue<PendingWrite> queue : pending.values()) {
+            for (PendingWrite write : queue) {
+                ReferenceCountUtil.release(write.message);
+                if (!write.promise.isVoid()) {
+                    write.promise.tryFailure(cause);
+                }
+            }
+        }
+        pending.clear();
+    }
+
+    private static final class PendingWrite {
+        private final Object message;
+        private final ChannelPromise promise;
+
+        private PendingWrite(Object message, ChannelPromise promise) {
+            this.message = message;
+            this.promise = promise;
+        }
+    }
+}
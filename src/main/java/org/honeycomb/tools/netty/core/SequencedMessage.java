@@ -0,0 +1,56 @@
+package org.honeycomb.tools.netty.core;
+
+import io.netty.channel.DefaultMessageSizeEstimator;
+import io.netty.channel.MessageSizeEstimator;
+import io.netty.util.AbstractReferenceCounted;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.ReferenceCounted;
+
+/**
+ * 带有请求序号的出站消息，由ResponseSequencer拆包后按请求到达的顺序写出
+ * <p>
+ * 包装对象有自己的引用计数，不与被包装的消息共享，它持有被包装的消息：
+ * 包装对象的引用计数降为0时释放被包装的消息，所以在到达ResponseSequencer之前写失败、被Netty释放时不会泄漏。
+ * ResponseSequencer拆包后写出被包装的消息，所有权随之转移，包装对象不再释放，由GC回收
+ * <p>
+ * 连接需要使用{@link #SIZE_ESTIMATOR}，否则非IO线程提交的写任务按未知消息估算大小，出站高水位形同虚设
+ * <p>
+ * User: luluful
+ * Date: 10/18/26
+ */
+public final class SequencedMessage extends AbstractReferenceCounted {
+    /**
+     * 按被包装的消息估算大小
+     */
+    public static final MessageSizeEstimator SIZE_ESTIMATOR = () -> {
+        MessageSizeEstimator.Handle handle = DefaultMessageSizeEstimator.DEFAULT.newHandle();
+        return msg -> handle.size(msg instanceof SequencedMessage ? ((SequencedMessage) msg).message : msg);
+    };
+
+    private final int sequence;
+    private final Object message;
+
+    public SequencedMessage(int sequence, Object message) {
+        this.sequence = sequence;
+        this.message = message;
+    }
+
+    public int getSequence() {
+        return sequence;
+    }
+
+    public Object getMessage() {
+        return message;
+    }
+
+    @Override
+    protected void deallocate() {
+        ReferenceCountUtil.release(message);
+    }
+
+    @Override
+    public ReferenceCounted touch(Object hint) {
+        ReferenceCountUtil.touch(message, hint);
+        return this;
+    }
+}
@@ -3,9 +3,17 @@ package org.honeycomb.tools.netty.core;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.handler.codec.http.*;
+import org.honeycomb.tools.netty.bootstrap.NettyServerProperties;
+import org.honeycomb.tools.netty.executor.SerialExecutor;
+import org.honeycomb.tools.netty.executor.ServletExecutionStrategy;
 import org.honeycomb.tools.netty.request.HttpRequestInputStream;
+import org.honeycomb.tools.netty.request.InboundFlowControl;
 import org.honeycomb.tools.netty.request.NettyHttpServletRequest;
 import org.honeycomb.tools.netty.response.NettyHttpServletResponse;
+import org.honeycomb.tools.netty.response.WritabilityMonitor;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * User: luluful
@@ -13,46 +21,114 @@ import org.honeycomb.tools.netty.response.NettyHttpServletResponse;
  */
 public class ServletContentHandler extends ChannelInboundHandlerAdapter {
     private NettyContext servletContext;
-    private HttpRequestInputStream inputStream; // FIXME this feels wonky, need a better approach
+    private final ServletExecutionStrategy executionStrategy;
+    private final ConnectionTracker connectionTracker;
+    private final InboundFlowControl inboundFlowControl;
+    private final AdmissionControl admissionControl;
+    private final NettyServerProperties properties;
+    private WritabilityMonitor writabilityMonitor;
+    private Executor servletExecutor;
+    private Executor listenerExecutor; //ReadListener和WriteListener的回调串行执行
+    private HttpRequestInputStream inputStream; //最近一个请求的请求体，后续的HttpContent都属于它
+    private int nextSequence; //下一个请求的序号，ResponseSequencer按序号顺序写出响应
 
-    ServletContentHandler(NettyContext servletContext) {
+    ServletContentHandler(NettyContext servletContext, ServletExecutionStrategy executionStrategy, ConnectionTracker connectionTracker,
+                          InboundFlowControl inboundFlowControl, AdmissionControl admissionControl, NettyServerProperties properties) {
         this.servletContext = servletContext;
+        this.executionStrategy = executionStrategy;
+        this.connectionTracker = connectionTracker;
+        this.inboundFlowControl = inboundFlowControl;
+        this.admissionControl = admissionControl;
+        this.properties = properties;
     }
 
     public NettyContext getServletContext() {
         return servletContext;
     }
 
+    /**
+     * @return 当前请求的请求体，每个请求一个
+     */
     public HttpRequestInputStream getInputStream() {
         return inputStream;
     }
 
+    public AdmissionControl getAdmissionControl() {
+        return admissionControl;
+    }
+
+    public ConnectionTracker getConnectionTracker() {
+        return connectionTracker;
+    }
+
+    public WritabilityMonitor getWritabilityMonitor() {
+        return writabilityMonitor;
+    }
+
+    /**
+     * @return 执行当前连接上Servlet的Executor，异步请求也在这里执行
+     */
+    public Executor getServletExecutor() {
+        return servletExecutor;
+    }
+
     @Override
     public void channelActive(ChannelHandlerContext ctx) throws Exception {
-        inputStream = new HttpRequestInputStream(ctx.channel());
+        servletExecutor = executionStrategy.executor(ctx.channel());
+        listenerExecutor = new SerialExecutor(servletExecutor);
+        connectionTracker.connectionOpened(ctx.channel());
+        writabilityMonitor = new WritabilityMonitor(ctx.channel(), properties.getWriteTimeout().toMillis(), TimeUnit.MILLISECONDS,
+                listenerExecutor);
     }
 
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
-        if (msg instanceof HttpRequest) {
+        if (msg instanceof HttpRequest && !admissionControl.admit(servletExecutor)) {
+            HttpRequest request = (HttpRequest) msg;
+            boolean keepAlive = connectionTracker.requestStarted(ctx.channel()) && HttpUtil.isKeepAlive(request);
+            inputStream = null; //被拒绝请求的请求体直接丢弃
+            admissionControl.reject(ctx, nextSequence++, keepAlive);
+        } else if (msg instanceof HttpRequest) {
             HttpRequest request = (HttpRequest) msg;
             HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK, false);
-            HttpUtil.setKeepAlive(response, HttpUtil.isKeepAlive(request));
-            NettyHttpServletResponse servletResponse = new NettyHttpServletResponse(ctx, servletContext, response);
+            boolean keepAlive = connectionTracker.requestStarted(ctx.channel()); //停机排空或达到请求数上限时不再保持连接
+            HttpUtil.setKeepAlive(response, keepAlive && HttpUtil.isKeepAlive(request));
+            inputStream = new HttpRequestInputStream(ctx.channel(), listenerExecutor, inboundFlowControl,
+                    properties.getReadTimeout().toMillis(), TimeUnit.MILLISECONDS);
+            int sequence = nextSequence++;
+            NettyHttpServletResponse servletResponse = new NettyHttpServletResponse(ctx, this, response, sequence);
             NettyHttpServletRequest servletRequest = new NettyHttpServletRequest(ctx, this, request, servletResponse);
             servletResponse.setRequest(servletRequest);
             if (HttpUtil.is100ContinueExpected(request)) { //请求头包含Expect: 100-continue
-                ctx.write(new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.CONTINUE), ctx.voidPromise());
+                ctx.write(new SequencedMessage(sequence, new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.CONTINUE)),
+                        ctx.voidPromise());
             }
             ctx.fireChannelRead(servletRequest);
         }
         if (msg instanceof HttpContent) { //EmptyLastHttpContent, DefaultLastHttpContent
-            inputStream.addContent((HttpContent) msg);
+            if (inputStream != null) {
+                inputStream.addContent((HttpContent) msg);
+            } else {
+                ((HttpContent) msg).release();
+            }
         }
     }
 
+    /**
+     * 出站缓冲降到低水位以下，唤醒等待写响应的Servlet线程
+     */
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        writabilityMonitor.writabilityChanged();
+        ctx.fireChannelWritabilityChanged();
+    }
+
     @Override
     public void channelInactive(ChannelHandlerContext ctx) throws Exception {
-        inputStream.close();
+        connectionTracker.connectionClosed(ctx.channel());
+        writabilityMonitor.writabilityChanged();
+        if (inputStream != null) {
+            inputStream.close(); //之前请求的请求体都已经完整到达，只有最近一个请求可能还在等待数据
+        }
     }
 }
\ No newline at end of file
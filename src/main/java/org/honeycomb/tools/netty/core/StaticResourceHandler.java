@@ -0,0 +1,280 @@
+package org.honeycomb.tools.netty.core;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.handler.codec.DateFormatter;
+import io.netty.handler.codec.http.*;
+import io.netty.util.ReferenceCountUtil;
+import org.honeycomb.tools.netty.resource.StaticResource;
+import org.honeycomb.tools.netty.resource.StaticResourceResolver;
+
+import java.time.Duration;
+import java.util.Date;
+
+/**
+ * 在IO线程上直接响应静态资源，不经过Servlet执行器和过滤器链：
+ * 磁盘文件用DefaultFileRegion（epoll下为sendfile）零拷贝写出，内存资源写出缓存的ByteBuf。
+ * 支持GET/HEAD、单个Range、If-None-Match、If-Modified-Since和Cache-Control，
+ * 客户端接受时优先返回预先压缩好的.br/.gz文件，不在请求时压缩
+ * <p>
+ * 找不到资源的请求原样交给ServletContentHandler，由Spring处理
+ * <p>
+ * User: luluful
+ * Date: 10/18/26
+ */
+class StaticResourceHandler extends ChannelInboundHandlerAdapter {
+    private final StaticResourceResolver resolver;
+    private final String contextPath;
+    private final ConnectionTracker connectionTracker;
+    private final String cacheControl; //为null时不输出Cache-Control
+    private final boolean precompressed;
+    private boolean skipContent; //已经响应的请求，丢弃它剩余的请求体
+
+    StaticResourceHandler(StaticResourceResolver resolver, String contextPath, ConnectionTracker connectionTracker, Duration cachePeriod,
+                          boolean precompressed) {
+        this.resolver = resolver;
+        this.contextPath = contextPath;
+        this.connectionTracker = connectionTracker;
+        this.cacheControl = cachePeriod == null ? null : "max-age=" + cachePeriod.getSeconds();
+        this.precompressed = precompressed;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof HttpRequest) {
+            HttpRequest request = (HttpRequest) msg;
+            String path = resourcePath(ctx.channel(), request);
+            StaticResource resource = path == null ? null : resolver.resolve(path);
+            if (resource != null) {
+                skipContent = !(msg instanceof LastHttpContent);
+                ReferenceCountUtil.release(msg);
+                serve(ctx, request, path, resource);
+                return;
+            }
+        } else if (skipContent && msg instanceof HttpContent) {
+            skipContent = !(msg instanceof LastHttpContent);
+            ReferenceCountUtil.release(msg);
+            return;
+        }
+        ctx.fireChannelRead(msg);
+    }
+
+    /**
+     * 连接上还有未完成的Servlet请求时不处理，保证响应顺序
+     */
+    private String resourcePath(Channel channel, HttpRequest request) {
+        HttpMethod method = request.method();
+        if ((!HttpMethod.GET.equals(method) && !HttpMethod.HEAD.equals(method)) || request.decoderResult().isFailure()
+                || connectionTracker.getInFlightRequests(channel) > 0) {
+            return null;
+        }
+        String path = new QueryStringDecoder(request.uri()).path();
+        if (!path.startsWith(contextPath + "/")) {
+            return null;
+        }
+        return path.substring(contextPath.length());
+    }
+
+    private void serve(ChannelHandlerContext ctx, HttpRequest request, String path, StaticResource original) {
+        HttpHeaders requestHeaders = request.headers();
+        boolean keepAlive = connectionTracker.requestStarted(ctx.channel()) && HttpUtil.isKeepAlive(request);
+        String contentEncoding = null;
+        StaticResource resource = original;
+        if (precompressed && !requestHeaders.contains(HttpHeaderNames.RANGE)) {
+            String acceptEncoding = requestHeaders.get(HttpHeaderNames.ACCEPT_ENCODING);
+            for (int i = 0; i < PRECOMPRESSED_ENCODINGS.length && acceptEncoding != null; i++) {
+                StaticResource variant;
+                if (accepts(acceptEncoding, PRECOMPRESSED_ENCODINGS[i])
+                        && (variant = resolver.resolve(path + PRECOMPRESSED_EXTENSIONS[i])) != null) {
+                    resource = variant;
+                    contentEncoding = PRECOMPRESSED_ENCODINGS[i];
+                    break;
+                }
+            }
+        }
+        String etag = resource.getETag();
+
+        if (isNotModified(requestHeaders, resource, etag)) {
+            FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.NOT_MODIFIED);
+            setCacheHeaders(response.headers(), resource, etag);
+            if (precompressed) {
+                response.headers().set(HttpHeaderNames.VARY, HttpHeaderNames.ACCEPT_ENCODING);
+            }
+            write(ctx, response, null, 0, 0, keepAlive);
+            return;
+        }
+
+        long length = resource.getLength();
+        long start = 0;
+        long count = length;
+        HttpResponseStatus status = HttpResponseStatus.OK;
+        String range = requestHeaders.get(HttpHeaderNames.RANGE);
+        String ifRange = requestHeaders.get(HttpHeaderNames.IF_RANGE);
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            long[] bounds = parseRange(range, length);
+            if (bounds == UNSATISFIABLE) {
+                FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+                response.headers().set(HttpHeaderNames.CONTENT_RANGE, "bytes */" + length);
+                HttpUtil.setContentLength(response, 0);
+                write(ctx, response, null, 0, 0, keepAlive);
+                return;
+            }
+            if (bounds != null) {
+                start = bounds[0];
+                count = bounds[1] - bounds[0] + 1;
+                status = HttpResponseStatus.PARTIAL_CONTENT;
+            }
+        }
+
+        HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, status);
+        HttpHeaders headers = response.headers();
+        headers.set(HttpHeaderNames.CONTENT_TYPE, original.getContentType()); //预压缩文件使用原文件的类型
+        headers.set(HttpHeaderNames.ACCEPT_RANGES, HttpHeaderValues.BYTES);
+        if (contentEncoding != null) {
+            headers.set(HttpHeaderNames.CONTENT_ENCODING, contentEncoding);
+        }
+        if (precompressed) {
+            headers.set(HttpHeaderNames.VARY, HttpHeaderNames.ACCEPT_ENCODING);
+        }
+        setCacheHeaders(headers, resource, etag);
+        if (status == HttpResponseStatus.PARTIAL_CONTENT) {
+            headers.set(HttpHeaderNames.CONTENT_RANGE, "bytes " + start + "-" + (start + count - 1) + "/" + length);
+        }
+        HttpUtil.setContentLength(response, count);
+        boolean sendBody = !HttpMethod.HEAD.equals(request.method()) && count > 0;
+        write(ctx, response, sendBody ? resource : null, start, count, keepAlive);
+    }
+
+    private void write(ChannelHandlerContext ctx, HttpResponse response, StaticResource body, long start, long count, boolean keepAlive) {
+        Channel channel = ctx.channel();
+        HttpUtil.setKeepAlive(response, keepAlive);
+        ChannelFuture future;
+        if (response instanceof FullHttpResponse) {
+            future = ctx.writeAndFlush(response);
+        } else {
+            ctx.write(response, ctx.voidPromise());
+            if (body != null) {
+                if (body.isFile()) {
+                    ctx.write(new DefaultFileRegion(body.getFile(), start, count), ctx.voidPromise()); //打开文件延迟到真正写出时
+                } else {
+                    ctx.write(body.getContent().retainedSlice((int) start, (int) count), ctx.voidPromise());
+                }
+            }
+            future = ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+        }
+        future.addListener(f -> connectionTracker.requestCompleted(channel));
+        if (!keepAlive) {
+            future.addListener(f -> ConnectionCloseReason.close(channel, connectionTracker.isDraining()
+                    ? ConnectionCloseReason.SHUTDOWN : ConnectionCloseReason.NOT_KEEP_ALIVE)); //写完时已经开始排空，按停机统计
+        }
+    }
+
+    private void setCacheHeaders(HttpHeaders headers, StaticResource resource, String etag) {
+        headers.set(HttpHeaderNames.ETAG, etag);
+        if (resource.getLastModified() > 0) {
+            headers.set(HttpHeaderNames.LAST_MODIFIED, DateFormatter.format(new Date(resource.getLastModified())));
+        }
+        if (cacheControl != null) {
+            headers.set(HttpHeaderNames.CACHE_CONTROL, cacheControl);
+        }
+    }
+
+    /**
+     * If-None-Match优先于If-Modified-Since
+     */
+    private boolean isNotModified(HttpHeaders requestHeaders, StaticResource resource, String etag) {
+        String ifNoneMatch = requestHeaders.get(HttpHeaderNames.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            if ("*".equals(ifNoneMatch.trim())) {
+                return true;
+            }
+            for (String candidate : ifNoneMatch.split(",")) {
+                String value = candidate.trim();
+                if (value.startsWith("W/")) {
+                    value = value.substring(2);
+                }
+                if (value.equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        String ifModifiedSince = requestHeaders.get(HttpHeaderNames.IF_MODIFIED_SINCE);
+        if (ifModifiedSince != null && resource.getLastModified() > 0) {
+            Date since = DateFormatter.parseHttpDate(ifModifiedSince);
+            return since != null && resource.getLastModified() / 1000 <= since.getTime() / 1000; //HTTP日期精确到秒
+        }
+        return false;
+    }
+
+    private static final long[] UNSATISFIABLE = new long[0];
+    private static final String[] PRECOMPRESSED_ENCODINGS = {"br", "gzip"}; //按优先级排列
+    private static final String[] PRECOMPRESSED_EXTENSIONS = {".br", ".gz"};
+
+    /**
+     * Accept-Encoding中包含该编码且q不为0
+     */
+    private static boolean accepts(String acceptEncoding, String encoding) {
+        for (String candidate : acceptEncoding.split(",")) {
+            String[] parts = candidate.split(";");
+            if (!encoding.equalsIgnoreCase(parts[0].trim())) {
+                continue;
+            }
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        return Double.parseDouble(param.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 只支持单个范围：bytes=a-b、bytes=a-、bytes=-n；多个范围或格式错误时返回null，按完整内容响应
+     *
+     * @return [start, end]闭区间，范围无法满足时返回UNSATISFIABLE
+     */
+    private static long[] parseRange(String range, long length) {
+        if (!range.startsWith("bytes=") || range.indexOf(',') >= 0) {
+            return null;
+        }
+        String spec = range.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            long start;
+            long end;
+            if (dash == 0) { //最后n个字节
+                long suffix = Long.parseLong(spec.substring(1));
+                if (suffix <= 0) {
+                    return UNSATISFIABLE;
+                }
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(spec.substring(0, dash));
+                end = dash == spec.length() - 1 ? length - 1 : Math.min(Long.parseLong(spec.substring(dash + 1)), length - 1);
+                if (end < start) {
+                    return start >= length ? UNSATISFIABLE : null;
+                }
+            }
+            if (start >= length) {
+                return UNSATISFIABLE;
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
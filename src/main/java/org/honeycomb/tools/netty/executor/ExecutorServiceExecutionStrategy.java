@@ -0,0 +1,42 @@
+package org.honeycomb.tools.netty.executor;
+
+import io.netty.channel.Channel;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * 所有连接共享一个ExecutorService，同一连接的请求可能在不同线程上执行
+ * <p>
+ * User: luluful
+ * Date: 10/18/26
+ */
+public abstract class ExecutorServiceExecutionStrategy implements ServletExecutionStrategy {
+    private final ExecutorService executorService;
+
+    protected ExecutorServiceExecutionStrategy(ExecutorService executorService) {
+        this.executorService = checkNotNull(executorService);
+    }
+
+    protected ExecutorService getExecutorService() {
+        return executorService;
+    }
+
+    @Override
+    public Executor executor(Channel channel) {
+        return executorService;
+    }
+
+    @Override
+    public void shutdown() {
+        executorService.shutdown();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executorService.awaitTermination(timeout, unit);
+    }
+}
@@ -0,0 +1,26 @@
+package org.honeycomb.tools.netty.executor;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * 工作窃取的ForkJoinPool，适合Servlet以CPU计算为主、很少阻塞的应用
+ * <p>
+ * User: luluful
+ * Date: 10/18/26
+ */
+public class ForkJoinExecutionStrategy extends ExecutorServiceExecutionStrategy {
+
+    public ForkJoinExecutionStrategy(int parallelism) {
+        super(new ForkJoinPool(parallelism, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("netty-servlet-fj-" + thread.getPoolIndex());
+            return thread;
+        }, null, true)); //asyncMode=true，提交的任务按FIFO执行
+    }
+
+    @Override
+    public String getName() {
+        return "fork-join(" + ((ForkJoinPool) getExecutorService()).getParallelism() + ")";
+    }
+}
@@ -0,0 +1,67 @@
+package org.honeycomb.tools.netty.executor;
+
+import io.netty.channel.Channel;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * 给另一个执行策略的每个Executor套上{@link MonitoredExecutor}，统计各Executor的排队情况
+ * <p>
+ * 同一个底层Executor总是返回同一个MonitoredExecutor，固定绑定策略下按EventExecutor分别统计
+ * <p>
+ * User: luluful
+ * Date: 10/18/26
+ */
+public class MonitoredExecutionStrategy implements ServletExecutionStrategy {
+    private final ServletExecutionStrategy delegate;
+    private final Map<Executor, MonitoredExecutor> executors = new ConcurrentHashMap<>();
+
+    public MonitoredExecutionStrategy(ServletExecutionStrategy delegate) {
+        this.delegate = checkNotNull(delegate);
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public MonitoredExecutor executor(Channel channel) {
+        return executors.computeIfAbsent(delegate.executor(channel), MonitoredExecutor::new);
+    }
+
+    /**
+     * @return 已经使用过的Executor
+     */
+    public Collection<MonitoredExecutor> getExecutors() {
+        return Collections.unmodifiableCollection(executors.values());
+    }
+
+    /**
+     * @return 所有Executor中排队未执行的任务数
+     */
+    public int getQueuedTasks() {
+        int queued = 0;
+        for (MonitoredExecutor executor : executors.values()) {
+            queued += executor.getQueuedTasks();
+        }
+        return queued;
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+}
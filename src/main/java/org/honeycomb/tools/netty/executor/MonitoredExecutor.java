@@ -0,0 +1,90 @@
+package org.honeycomb.tools.netty.executor;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * 统计排队未执行的任务数和最早排队任务的等待时间，供IO线程在交给执行器之前判断是否过载
+ * <p>
+ * 已开始执行的任务在到达队头时才从等待队列中移除，所以执行器不是先进先出时也能得到最早排队任务的等待时间
+ * <p>
+ * User: luluful
+ * Date: 10/18/26
+ */
+public class MonitoredExecutor implements Executor {
+    private final Executor delegate;
+    private final Queue<QueuedTask> waiting = new ConcurrentLinkedQueue<>(); //按提交顺序排列
+    private final AtomicInteger queuedTasks = new AtomicInteger();
+
+    public MonitoredExecutor(Executor delegate) {
+        this.delegate = checkNotNull(delegate);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        QueuedTask task = new QueuedTask(command);
+        queuedTasks.incrementAndGet();
+        waiting.offer(task);
+        try {
+            delegate.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.start();
+            throw e;
+        }
+    }
+
+    /**
+     * @return 已提交但还没有开始执行的任务数
+     */
+    public int getQueuedTasks() {
+        return queuedTasks.get();
+    }
+
+    /**
+     * @return 最早排队且还没有开始执行的任务已经等待的纳秒数，没有排队任务时为0
+     */
+    public long getOldestQueuedNanos() {
+        QueuedTask head;
+        while ((head = waiting.peek()) != null) {
+            if (!head.started) {
+                return Math.max(0, System.nanoTime() - head.queuedNanos);
+            }
+            waiting.remove(head);
+        }
+        return 0;
+    }
+
+    private void removeStartedHead() {
+        QueuedTask head;
+        while ((head = waiting.peek()) != null && head.started) {
+            waiting.remove(head);
+        }
+    }
+
+    private class QueuedTask implements Runnable {
+        private final Runnable command;
+        private final long queuedNanos = System.nanoTime();
+        private volatile boolean started;
+
+        QueuedTask(Runnable command) {
+            this.command = command;
+        }
+
+        void start() {
+            started = true;
+            queuedTasks.decrementAndGet();
+            removeStartedHead();
+        }
+
+        @Override
+        public void run() {
+            start();
+            command.run();
+        }
+    }
+}
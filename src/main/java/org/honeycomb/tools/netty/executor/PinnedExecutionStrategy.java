@@ -0,0 +1,56 @@
+package org.honeycomb.tools.netty.executor;
+
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutor;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每个连接固定绑定到一个单线程的EventExecutor上，同一连接的请求按顺序执行
+ * <p>
+ * 每个EventExecutor的任务队列无界，一个慢请求会阻塞绑定在同一EventExecutor上的所有连接
+ * <p>
+ * User: luluful
+ * Date: 10/18/26
+ */
+public class PinnedExecutionStrategy implements ServletExecutionStrategy {
+    private static final AttributeKey<EventExecutor> PINNED_EXECUTOR = AttributeKey.valueOf(PinnedExecutionStrategy.class, "PINNED_EXECUTOR");
+
+    private final DefaultEventExecutorGroup group;
+
+    public PinnedExecutionStrategy(int threads) {
+        this.group = new DefaultEventExecutorGroup(threads, new DefaultThreadFactory("netty-servlet"));
+    }
+
+    @Override
+    public String getName() {
+        return "pinned(" + group.executorCount() + ")";
+    }
+
+    @Override
+    public Executor executor(Channel channel) {
+        EventExecutor executor = channel.attr(PINNED_EXECUTOR).get();
+        if (executor == null) {
+            executor = group.next();
+            EventExecutor old = channel.attr(PINNED_EXECUTOR).setIfAbsent(executor);
+            if (old != null) {
+                executor = old;
+            }
+        }
+        return executor;
+    }
+
+    @Override
+    public void shutdown() {
+        group.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return group.awaitTermination(timeout, unit);
+    }
+}
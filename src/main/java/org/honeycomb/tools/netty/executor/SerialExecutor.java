@@ -0,0 +1,53 @@
+package org.honeycomb.tools.netty.executor;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * 在底层Executor上按提交顺序逐个执行任务，保证同一连接的ReadListener/WriteListener回调不会并发
+ * <p>
+ * User: luluful
+ * Date: 10/18/26
+ */
+public class SerialExecutor implements Executor {
+    private final Executor delegate;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public SerialExecutor(Executor delegate) {
+        this.delegate = checkNotNull(delegate);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        tasks.offer(checkNotNull(task));
+        schedule();
+    }
+
+    private void schedule() {
+        if (!tasks.isEmpty() && running.compareAndSet(false, true)) {
+            try {
+                delegate.execute(this::drain);
+            } catch (RuntimeException e) {
+                running.set(false);
+                throw e;
+            }
+        }
+    }
+
+    private void drain() {
+        try {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        } finally {
+            running.set(false);
+            schedule(); //释放running之后可能又有新任务提交进来
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package org.honeycomb.tools.netty.executor;
+
+import io.netty.channel.Channel;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 决定Servlet在哪个线程上执行的策略
+ * <p>
+ * IO线程解码出请求后，通过{@link #executor(Channel)}拿到对应的Executor，把过滤器链和Servlet的执行交给它。
+ * 可以在Spring容器中声明一个该接口的Bean来替换配置文件指定的策略
+ * <p>
+ * User: luluful
+ * Date: 10/18/26
+ */
+public interface ServletExecutionStrategy {
+
+    /**
+     * @return 策略名称，用于日志
+     */
+    String getName();
+
+    /**
+     * 获取执行该连接上请求的Executor，Executor队列已满时execute方法抛出{@link java.util.concurrent.RejectedExecutionException}
+     *
+     * @param channel 请求所在的连接
+     */
+    Executor executor(Channel channel);
+
+    /**
+     * 不再接收新任务，已提交的任务继续执行
+     */
+    void shutdown();
+
+    /**
+     * 等待已提交的任务执行完毕
+     *
+     * @return true=在超时前全部执行完毕
+     */
+    boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException;
+}
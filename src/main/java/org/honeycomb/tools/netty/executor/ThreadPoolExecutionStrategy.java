@@ -0,0 +1,31 @@
+package org.honeycomb.tools.netty.executor;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 有界队列的线程池，适合Servlet中有大量阻塞IO的应用
+ * <p>
+ * 队列满且线程数达到上限后拒绝新请求，直接返回503。
+ * 不能退回到提交任务的线程上执行：提交发生在IO线程上，Servlet读请求体时要等的数据只能由这个IO线程读入，会互相等待到读超时
+ * <p>
+ * User: luluful
+ * Date: 10/18/26
+ */
+public class ThreadPoolExecutionStrategy extends ExecutorServiceExecutionStrategy {
+
+    public ThreadPoolExecutionStrategy(int coreThreads, int maxThreads, long keepAliveMillis, int queueCapacity) {
+        super(new ThreadPoolExecutor(coreThreads, maxThreads, keepAliveMillis, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new DefaultThreadFactory("netty-servlet"), new ThreadPoolExecutor.AbortPolicy()));
+    }
+
+    @Override
+    public String getName() {
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) getExecutorService();
+        return "thread-pool(" + executor.getCorePoolSize() + "-" + executor.getMaximumPoolSize()
+                + ", queue=" + executor.getQueue().remainingCapacity() + ")";
+    }
+}
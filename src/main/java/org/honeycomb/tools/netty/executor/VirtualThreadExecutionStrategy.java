@@ -0,0 +1,52 @@
+package org.honeycomb.tools.netty.executor;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 每个请求一个虚拟线程，需要JDK 21及以上
+ * <p>
+ * 项目按JDK 8编译，这里通过反射调用{@code Executors.newVirtualThreadPerTaskExecutor()}
+ * <p>
+ * User: luluful
+ * Date: 10/18/26
+ */
+public class VirtualThreadExecutionStrategy extends ExecutorServiceExecutionStrategy {
+    private static final Method NEW_VIRTUAL_THREAD_EXECUTOR = findFactoryMethod();
+
+    public VirtualThreadExecutionStrategy() {
+        super(newVirtualThreadExecutor());
+    }
+
+    /**
+     * @return 当前JVM是否支持虚拟线程
+     */
+    public static boolean isSupported() {
+        return NEW_VIRTUAL_THREAD_EXECUTOR != null;
+    }
+
+    private static Method findFactoryMethod() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        if (!isSupported()) {
+            throw new IllegalStateException("Virtual threads require JDK 21 or later, running on " + System.getProperty("java.version"));
+        }
+        try {
+            return (ExecutorService) NEW_VIRTUAL_THREAD_EXECUTOR.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not create virtual thread executor", e);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "virtual-thread";
+    }
+}
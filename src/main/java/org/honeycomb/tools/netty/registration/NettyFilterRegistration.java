@@ -19,6 +19,7 @@ public class NettyFilterRegistration extends AbstractNettyRegistration implement
     private volatile boolean initialised;
     private Filter filter;
     private Collection<String> urlPatternMappings = new LinkedList<>();
+    private Collection<String> servletNameMappings = new LinkedList<>();
 
     public NettyFilterRegistration(NettyContext context, String filterName, String className, Filter filter) {
         super(filterName, className, context);
@@ -48,7 +49,7 @@ public class NettyFilterRegistration extends AbstractNettyRegistration implement
     public void addMappingForUrlPatterns(EnumSet<DispatcherType> dispatcherTypes, boolean isMatchAfter, String... urlPatterns) {
         NettyContext context = getNettyContext();
         for (String urlPattern : urlPatterns) {
-            context.addFilterMapping(dispatcherTypes, isMatchAfter, urlPattern);
+            context.addFilterMapping(this, dispatcherTypes, isMatchAfter, urlPattern);
         }
         urlPatternMappings.addAll(Arrays.asList(urlPatterns));
     }
@@ -58,14 +59,17 @@ public class NettyFilterRegistration extends AbstractNettyRegistration implement
         return urlPatternMappings;
     }
 
-    //Servlet相关的不管
     @Override
     public void addMappingForServletNames(EnumSet<DispatcherType> dispatcherTypes, boolean isMatchAfter, String... servletNames) {
-
+        NettyContext context = getNettyContext();
+        for (String servletName : servletNames) {
+            context.addFilterServletNameMapping(this, dispatcherTypes, isMatchAfter, servletName);
+        }
+        servletNameMappings.addAll(Arrays.asList(servletNames));
     }
 
     @Override
     public Collection<String> getServletNameMappings() {
-        return null;
+        return servletNameMappings;
     }
 }
@@ -15,7 +15,6 @@ public class NettyServletRegistration extends AbstractNettyRegistration implemen
     private final Logger log = LoggerFactory.getLogger(getClass());
     private volatile boolean initialised;
     private Servlet servlet;
-    private Collection<String> urlPatternMappings = new LinkedList<>();
 
     public NettyServletRegistration(NettyContext context, String servletName, String className, Servlet servlet) {
         super(servletName, className, context);
@@ -77,12 +76,14 @@ public class NettyServletRegistration extends AbstractNettyRegistration implemen
                 log.error("Throwing exception when getting Servlet in NettyServletRegistration.", e);
             }
         }
-        urlPatternMappings.addAll(Arrays.asList(urlPatterns));
-        return new HashSet<>(urlPatternMappings);
+        return new HashSet<>(getMappings());
     }
 
+    /**
+     * 映射保存在NettyContext中，运行时增加或删除映射后立即反映
+     */
     @Override
     public Collection<String> getMappings() {
-        return urlPatternMappings;
+        return getNettyContext().getServletMappings(getName());
     }
 }
@@ -2,41 +2,152 @@ package org.honeycomb.tools.netty.request;
 
 import com.google.common.primitives.Ints;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
+import io.netty.handler.codec.http.DefaultHttpContent;
 import io.netty.handler.codec.http.HttpContent;
 import io.netty.handler.codec.http.LastHttpContent;
 
 import javax.servlet.ReadListener;
 import javax.servlet.ServletInputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
 
 /**
+ * 单个请求的请求体，IO线程把HttpContent放入队列，Servlet线程从队列中读取
+ * <p>
  * User: luluful
  * Date: 4/8/19
  */
 public class HttpRequestInputStream extends ServletInputStream {
+    private static final HttpContent CLOSED = new DefaultHttpContent(Unpooled.EMPTY_BUFFER); //连接断开时放入队列，唤醒等待的读线程
+
     private final Channel channel; //netty ChannelHandlerContext的channel
     private AtomicBoolean closed; //输入流是否已经关闭，保证线程安全
     private final BlockingQueue<HttpContent> queue; //HttpContent的队列，一次请求可能有多次加入
     private HttpContent current;
     private int currentLength;
-    private ReadListener readListener;
+    private volatile ReadListener readListener; //非阻塞读的监听器
+    private final Executor listenerExecutor; //执行ReadListener回调的Executor，回调串行执行
+    private final AtomicBoolean awaitingData = new AtomicBoolean(); //isReady()返回false后，数据到达时需要回调onDataAvailable
+    private volatile boolean allDataReadNotified; //是否已经回调过onAllDataRead
+    private final InboundFlowControl flowControl;
+    private final AtomicInteger queuedBytes = new AtomicInteger(); //队列中未读的字节数
+    private final AtomicBoolean throttled = new AtomicBoolean(); //是否因超过高水位暂停了读取连接
+    private final long readTimeoutNanos; //阻塞读等待请求体的最长时间，不大于0时不限制
+    private boolean discarding; //只在IO线程访问，响应已经结束，丢弃剩余的请求体
 
-    public HttpRequestInputStream(Channel channel) {
+    public HttpRequestInputStream(Channel channel, Executor listenerExecutor, InboundFlowControl flowControl,
+                                  long readTimeout, TimeUnit unit) {
         this.channel = checkNotNull(channel);
+        this.readTimeoutNanos = unit.toNanos(readTimeout);
+        this.listenerExecutor = checkNotNull(listenerExecutor);
+        this.flowControl = checkNotNull(flowControl);
         this.closed = new AtomicBoolean();
         queue = new LinkedBlockingQueue<>();
     }
 
+    /**
+     * 由IO线程调用，接管httpContent的引用计数；非阻塞模式下如果Servlet在等待数据则回调onDataAvailable
+     * 队列中的字节数超过高水位时暂停读取连接
+     */
     public void addContent(HttpContent httpContent) {
-        checkNotClosed();
-        queue.offer(httpContent.retain());
+        if (discarding || closed.get()) { //响应已经结束或者输入流已经关闭，不会再读取剩余的请求体
+            httpContent.release();
+            return;
+        }
+        queue.offer(httpContent);
+        if (closed.get() && queue.remove(httpContent)) { //与Servlet线程的close()并发
+            httpContent.release();
+            return;
+        }
+        if (queuedBytes.addAndGet(httpContent.content().readableBytes()) > flowControl.getHighWaterMark()
+                && throttled.compareAndSet(false, true)) {
+            flowControl.pause(channel);
+            //设置throttled之前Servlet线程可能已经把队列读到低水位以下，它看到throttled为false不会恢复读取
+            resumeIfDrained();
+        }
+        if (readListener != null && awaitingData.compareAndSet(true, false)) {
+            listenerExecutor.execute(this::notifyReadListener);
+        }
+    }
+
+    /**
+     * 从队列中取出HttpContent，队列中的字节数降到低水位以下时恢复读取连接
+     */
+    private HttpContent dequeue(long timeout, TimeUnit unit) throws InterruptedException {
+        HttpContent content = queue.poll(timeout, unit);
+        if (content != null) {
+            dequeued(content);
+        }
+        return content;
+    }
+
+    /**
+     * 阻塞读等待HttpContent，readTimeout不大于0时一直等到数据到达或连接断开
+     */
+    private HttpContent dequeueBlocking() throws InterruptedException {
+        if (readTimeoutNanos > 0) {
+            return dequeue(readTimeoutNanos, TimeUnit.NANOSECONDS);
+        }
+        HttpContent content = queue.take();
+        if (content != null) {
+            dequeued(content);
+        }
+        return content;
+    }
+
+    private void dequeued(HttpContent content) {
+        if (queuedBytes.addAndGet(-content.content().readableBytes()) <= flowControl.getLowWaterMark()) {
+            resumeReading();
+        }
+    }
+
+    /**
+     * 暂停和恢复都在IO线程上执行，setAutoRead的顺序与暂停计数一致
+     */
+    private void resumeReading() {
+        if (!throttled.get()) {
+            return; //IO线程暂停之后会再检查一次队列
+        }
+        if (channel.eventLoop().inEventLoop()) {
+            resumeIfDrained();
+        } else {
+            channel.eventLoop().execute(this::resumeIfDrained);
+        }
+    }
+
+    private void resumeIfDrained() {
+        if (queuedBytes.get() <= flowControl.getLowWaterMark() && throttled.compareAndSet(true, false)) {
+            flowControl.resume(channel);
+        }
+    }
+
+    /**
+     * 响应结束时调用，丢弃Servlet没有读取的请求体，避免连接因为流控停止读取
+     * 在IO线程上执行，与addContent不会并发
+     */
+    public void discardUnreadContent() {
+        channel.eventLoop().execute(() -> {
+            if (closed.get()) {
+                return;
+            }
+            discarding = true;
+            closeCurrentHttpContent();
+            closeHttpContentQueue();
+        });
     }
 
     public int getCurrentLength() {
@@ -68,18 +179,118 @@ public class HttpRequestInputStream extends ServletInputStream {
 
     /**
      * 已读入至少一次HttpContent且未读取完所有内容，或者HttpContent队列非空
+     * 非阻塞模式下返回false时，等下一个HttpContent到达后回调onDataAvailable
      */
     @Override
     public boolean isReady() {
         checkNotClosed();
+        boolean ready = hasBufferedData();
+        if (!ready && readListener != null && !isFinished()) {
+            awaitingData.set(true);
+            //设置标志前数据可能刚好到达，再检查一次，避免错过通知
+            if (!queue.isEmpty() && awaitingData.compareAndSet(true, false)) {
+                listenerExecutor.execute(this::notifyReadListener);
+            }
+        }
+        return ready;
+    }
+
+    private boolean hasBufferedData() {
         return (current != null && current.content().readableBytes() > 0) || !queue.isEmpty();
     }
 
+    /**
+     * 设置后进入非阻塞模式，有数据时在Servlet执行器上回调onDataAvailable，读完后回调onAllDataRead
+     */
     @Override
     public void setReadListener(ReadListener readListener) {
         checkNotClosed();
         checkNotNull(readListener);
+        checkState(this.readListener == null, "ReadListener has already been set");
         this.readListener = readListener;
+        listenerExecutor.execute(this::notifyReadListener);
+    }
+
+    /**
+     * 在listenerExecutor上执行：有数据则回调onDataAvailable，数据全部读完则回调onAllDataRead
+     */
+    private void notifyReadListener() {
+        ReadListener listener = readListener;
+        if (closed.get() || allDataReadNotified) {
+            return;
+        }
+        try {
+            if (!isAllDataRead()) {
+                if (!hasBufferedData()) {
+                    isReady(); //没有数据则重新登记等待
+                    return;
+                }
+                listener.onDataAvailable();
+            }
+            if (!closed.get() && !allDataReadNotified && isAllDataRead()) {
+                allDataReadNotified = true;
+                listener.onAllDataRead();
+            }
+        } catch (Throwable t) {
+            listener.onError(t);
+        }
+    }
+
+    /**
+     * 最后一个HttpContent已经到达，且所有内容都已被读取
+     */
+    private boolean isAllDataRead() {
+        if (current != null && current.content().readableBytes() > 0) {
+            return false;
+        }
+        if (isLastContent()) {
+            return true;
+        }
+        HttpContent next = queue.peek(); //只剩一个空的LastHttpContent时，Servlet读到的下一个字节就是-1
+        return next instanceof LastHttpContent && next.content().readableBytes() == 0 && queue.size() == 1;
+    }
+
+    /**
+     * 阻塞读取当前请求剩余的全部请求体，不复制数据，返回由各个HttpContent组成的只读视图
+     * <p>
+     * 返回的ByteBuf已经retain，调用方用完后必须release；需要NIO ByteBuffer时可在release前调用nioBuffers()
+     * <p>
+     * 已读取的部分由返回值持有，不计入readBufferHighWaterMark，读取期间不会因流控暂停连接，
+     * 整个请求体都保留在内存中直到release。请求体大小不可信时使用{@link #readRetainedContent(int)}
+     *
+     * @throws IOException channel非激活状态或读超时
+     */
+    public ByteBuf readRetainedContent() throws IOException {
+        return readRetainedContent(Integer.MAX_VALUE);
+    }
+
+    /**
+     * 同{@link #readRetainedContent()}，剩余的请求体超过maxBytes时释放已读取的部分并抛出异常
+     *
+     * @throws IOException channel非激活状态、读超时或请求体超过maxBytes
+     */
+    public ByteBuf readRetainedContent(int maxBytes) throws IOException {
+        checkArgument(maxBytes >= 0, "maxBytes must not be negative");
+        checkState(readListener == null, "Cannot read the whole content in non-blocking mode");
+        CompositeByteBuf composite = channel.alloc().compositeBuffer(Integer.MAX_VALUE);
+        try {
+            while (true) {
+                poll();
+                ByteBuf content = current.content();
+                if (content.readableBytes() > maxBytes - composite.readableBytes()) {
+                    throw new IOException("Request content exceeds " + maxBytes + " bytes");
+                }
+                if (content.isReadable()) {
+                    composite.addComponent(true, content.readRetainedSlice(content.readableBytes()));
+                }
+                if (isLastContent()) {
+                    return composite.asReadOnly();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            composite.release();
+            throw e;
+        }
     }
 
     /**
@@ -107,13 +318,18 @@ public class HttpRequestInputStream extends ServletInputStream {
         if (closed.compareAndSet(false, true)) {
             closeHttpContentQueue();
             closeCurrentHttpContent();
+            queue.offer(CLOSED); //唤醒阻塞在poll()上的Servlet线程
+            ReadListener listener = readListener;
+            if (listener != null && !allDataReadNotified && !channel.isActive()) {
+                listenerExecutor.execute(() -> listener.onError(new IOException("Connection closed before all data was read")));
+            }
         }
     }
 
     /**
      * 关闭当前HttpContent
      */
-    public void closeCurrentHttpContent() {
+    private void closeCurrentHttpContent() {
         if(current != null){
             current.release();
             current = null;
@@ -131,6 +347,8 @@ public class HttpRequestInputStream extends ServletInputStream {
             }
         }
         queue.clear();
+        queuedBytes.set(0);
+        resumeReading();
     }
 
     /**
@@ -179,28 +397,37 @@ public class HttpRequestInputStream extends ServletInputStream {
 
     /**
      * 如果没有可读字节了，从HttpContent队列中获取一个到current中
+     * 阻塞模式下线程挂起在队列上，直到IO线程放入新的HttpContent、连接断开或读超时
      * 如果readListener非空，则非阻塞，读不到数据也直接返回
-     * @throws IOException channel非激活状态
+     * @throws IOException channel非激活状态、读超时或线程被中断
      */
     private void poll() throws IOException {
         checkNotClosed();
         if (null == current || current.content().readableBytes() == 0) {
+            if (isLastContent()) { //current是当前请求最后一个HttpContent
+                return;
+            }
+            closeCurrentHttpContent(); //已经读完的HttpContent及时释放
             boolean blocking = null == readListener;
-            while (!isLastContent()) { //current为空，或者current不是当前请求最后一个HttpContent
-                try {
-                    current = queue.poll(1000, TimeUnit.NANOSECONDS);
-                } catch (InterruptedException ignored) {
-                }
-                if(current != null){
-                    this.currentLength = current.content().readableBytes();
-                }
-                if (current != null || !blocking) { //队列中读取到数据，或者readListener非空（非阻塞），则退出
-                    break;
-                }
-                if (!channel.isActive()) {
-                    throw new IOException("Channel is not active");
+            HttpContent next;
+            try {
+                next = blocking ? dequeueBlocking() : dequeue(0, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for request content");
+            }
+            if (next == CLOSED) {
+                throw new IOException("Channel is not active");
+            }
+            if (next == null) {
+                if (blocking) {
+                    throw new SocketTimeoutException("Timed out after " + TimeUnit.NANOSECONDS.toMillis(readTimeoutNanos)
+                            + " ms waiting for request content");
                 }
+                throw new IllegalStateException("No request content available, read() must not be called when isReady() is false");
             }
+            current = next;
+            this.currentLength = current.content().readableBytes();
         }
     }
 
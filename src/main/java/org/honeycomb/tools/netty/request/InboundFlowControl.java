@@ -0,0 +1,79 @@
+package org.honeycomb.tools.netty.request;
+
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * 请求体的入站流控：连接上排队未读的字节数超过高水位时关闭autoRead，
+ * Servlet读到低水位以下后再打开，避免上传快、处理慢时占用大量内存
+ * <p>
+ * pipelining下同一连接上可能有多个请求的输入流同时积压，每个输入流各自暂停和恢复，全部恢复后才重新打开autoRead
+ * <p>
+ * User: luluful
+ * Date: 10/18/26
+ */
+public class InboundFlowControl {
+    private static final AttributeKey<AtomicInteger> PAUSED = AttributeKey.valueOf(InboundFlowControl.class, "PAUSED");
+
+    private final int lowWaterMark;
+    private final int highWaterMark;
+    private final LongAdder throttleCount = new LongAdder(); //所有连接累计被暂停读取的次数
+
+    public InboundFlowControl(int lowWaterMark, int highWaterMark) {
+        checkArgument(lowWaterMark >= 0 && lowWaterMark <= highWaterMark,
+                "lowWaterMark (%s) must be between 0 and highWaterMark (%s)", lowWaterMark, highWaterMark);
+        this.lowWaterMark = lowWaterMark;
+        this.highWaterMark = highWaterMark;
+    }
+
+    int getLowWaterMark() {
+        return lowWaterMark;
+    }
+
+    int getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    /**
+     * 某个输入流超过高水位，暂停读取连接
+     */
+    void pause(Channel channel) {
+        throttleCount.increment();
+        if (pausedCount(channel).incrementAndGet() == 1) {
+            channel.config().setAutoRead(false);
+        }
+    }
+
+    /**
+     * 之前暂停过的输入流降到低水位以下或被关闭，没有其他输入流暂停时恢复读取连接
+     */
+    void resume(Channel channel) {
+        if (pausedCount(channel).decrementAndGet() == 0) {
+            channel.config().setAutoRead(true);
+        }
+    }
+
+    private AtomicInteger pausedCount(Channel channel) {
+        AtomicInteger count = channel.attr(PAUSED).get();
+        if (count == null) {
+            AtomicInteger created = new AtomicInteger();
+            count = channel.attr(PAUSED).setIfAbsent(created);
+            if (count == null) {
+                count = created;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return 累计暂停读取的次数
+     */
+    public long getThrottleCount() {
+        return throttleCount.sum();
+    }
+}
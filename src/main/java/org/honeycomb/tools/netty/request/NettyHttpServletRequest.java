@@ -1,5 +1,6 @@
 package org.honeycomb.tools.netty.request;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.HttpHeaders;
 import io.netty.handler.codec.http.HttpMethod;
@@ -19,9 +20,11 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
 import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
 import java.security.Principal;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 
 /**
  * User: luluful
@@ -34,6 +37,7 @@ public class NettyHttpServletRequest implements HttpServletRequest {
     private final NettyContext servletContext;
     private final HttpRequest request;
     private final HttpRequestInputStream inputStream;
+    private final Executor servletExecutor;
 
     private boolean asyncSupported = true;
     private NettyAsyncContext asyncContext;
@@ -45,6 +49,7 @@ public class NettyHttpServletRequest implements HttpServletRequest {
         this.request = request;
         this.servletResponse = servletResponse;
         this.inputStream = handler.getInputStream();
+        this.servletExecutor = handler.getServletExecutor();
         this.attributes = new ConcurrentHashMap<>();
         this.headers = request.headers();
 
@@ -161,26 +166,38 @@ public class NettyHttpServletRequest implements HttpServletRequest {
                 this.queryString = servletPath.substring(queryInx + 1);
                 servletPath = servletPath.substring(0, queryInx);
             }
-            this.servletPath = servletPath;
-            this.requestUri = this.servletContext.getContextPath() + servletPath; //TODO 加上pathInfo
+            if (this.servletPath == null) { //还没有经过路由时，把整个路径作为ServletPath
+                this.servletPath = servletPath;
+            }
+            this.requestUri = this.servletContext.getContextPath() + servletPath;
         } else {
             this.servletPath = "";
             this.requestUri = "";
         }
-        this.pathInfo = null;
 
         isPathsParsed = true;
     }
 
+    /**
+     * 由NettyRequestDispatcher按匹配到的url-pattern设置
+     *
+     * @param servletPath 匹配url-pattern的部分
+     * @param pathInfo    路径匹配时剩下的部分，其他匹配方式为null
+     */
+    public void setServletPath(String servletPath, String pathInfo) {
+        checkAndParsePaths();
+        this.servletPath = servletPath;
+        this.pathInfo = pathInfo;
+    }
+
     @Override
     public String getMethod() {
         return request.method().name();
     }
 
-    //TODO ServletPath和PathInfo应该是互补的，根据URL-Pattern匹配的路径不同而不同
-    // 现在把PathInfo恒为null，ServletPath恒为uri-contextPath
-    // 可以满足SpringBoot的需求，但不满足ServletPath和PathInfo的语义
-    // 需要在RequestUrlPatternMapper匹配的时候设置,new NettyRequestDispatcher的时候传入MapperData
+    /**
+     * ServletPath和PathInfo是互补的，由匹配到的url-pattern决定，见{@link org.honeycomb.tools.netty.utils.ServletRoute}
+     */
     @Override
     public String getPathInfo() {
         checkAndParsePaths();
@@ -384,16 +401,15 @@ public class NettyHttpServletRequest implements HttpServletRequest {
         }
 
         stringToInsertMap(request.uri());
-        //处理POST请求的请求参数
-        if (request.method().equals(HttpMethod.POST) && inputStream.isReady()) {
+        //处理POST表单的请求参数，其他类型的请求体留给应用自己读取
+        if (request.method().equals(HttpMethod.POST) && isFormContent()) {
             try {
-                StringBuilder sb = new StringBuilder();
-                String line;
-                BufferedReader br = new BufferedReader(new InputStreamReader(inputStream));
-                while ((line = br.readLine()) != null) sb.append(line);
-                String body = sb.toString();
-                stringToInsertMap("?" + body);
-                inputStream.closeCurrentHttpContent(); //关闭当前http请求体,这样下次请求的时候,才能正常处理,不被误判为流已结束
+                ByteBuf body = inputStream.readRetainedContent(); //直接从ByteBuf解码，不经过BufferedReader复制
+                try {
+                    stringToInsertMap("?" + body.toString(Charset.forName(getCharacterEncoding())));
+                } finally {
+                    body.release();
+                }
             } catch (IOException e) {
                 e.printStackTrace();
             }
@@ -402,6 +418,11 @@ public class NettyHttpServletRequest implements HttpServletRequest {
         this.isParameterParsed = true;
     }
 
+    private boolean isFormContent() {
+        String contentType = getContentType();
+        return contentType != null && contentType.toLowerCase(Locale.ENGLISH).startsWith("application/x-www-form-urlencoded");
+    }
+
     private void stringToInsertMap(String source) {
         QueryStringDecoder queryStringDecoder = new QueryStringDecoder(source);
         Map<String, List<String>> params = queryStringDecoder.parameters();
@@ -563,7 +584,7 @@ public class NettyHttpServletRequest implements HttpServletRequest {
 
     @Override
     public AsyncContext startAsync() {
-        return startAsync(this, null);
+        return startAsync(this, servletResponse); //使用原始的请求和响应
     }
 
     @Override
@@ -589,7 +610,7 @@ public class NettyHttpServletRequest implements HttpServletRequest {
     @Override
     public AsyncContext getAsyncContext() {
         if (null == asyncContext) {
-            asyncContext = new NettyAsyncContext(this, ctx);
+            asyncContext = new NettyAsyncContext(this, servletExecutor);
         }
         return asyncContext;
     }
@@ -630,6 +651,27 @@ public class NettyHttpServletRequest implements HttpServletRequest {
         return inputStream;
     }
 
+    /**
+     * 零拷贝读取剩余的请求体，适合直接从池化内存解码的二进制协议，与getInputStream()读取的是同一份数据
+     * <p>
+     * 不受readBufferHighWaterMark流控限制，整个请求体都保留在内存中，请求体大小不可信时使用{@link #getRetainedContent(int)}
+     *
+     * @return 只读的请求体视图，调用方用完后必须release
+     * @see HttpRequestInputStream#readRetainedContent()
+     */
+    public ByteBuf getRetainedContent() throws IOException {
+        return inputStream.readRetainedContent();
+    }
+
+    /**
+     * 同{@link #getRetainedContent()}，剩余的请求体超过maxBytes时抛出IOException
+     *
+     * @see HttpRequestInputStream#readRetainedContent(int)
+     */
+    public ByteBuf getRetainedContent(int maxBytes) throws IOException {
+        return inputStream.readRetainedContent(maxBytes);
+    }
+
     @Override
     public BufferedReader getReader() throws IOException {
         return new BufferedReader(new InputStreamReader(inputStream, getCharacterEncoding()));
@@ -0,0 +1,172 @@
+package org.honeycomb.tools.netty.resource;
+
+import com.google.common.io.ByteStreams;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.Function;
+
+/**
+ * ServletContext.getResource/getResourceAsStream的缓存，按路径缓存查找结果（包括未找到），
+ * 小资源同时缓存内容；按条目数和内容总字节数做LRU淘汰
+ * <p>
+ * 开发模式（checkModified）下，磁盘文件的修改时间变化后重新加载，并且不缓存未找到的结果
+ * <p>
+ * User: luluful
+ * Date: 10/18/26
+ */
+public class ResourceCache {
+    private static final Entry MISSING = new Entry(null, null, null, 0);
+
+    private final int maxEntries;
+    private final long maxSize; //缓存内容的总字节数上限
+    private final int maxResourceSize; //单个资源缓存内容的字节数上限，更大的只缓存URL
+    private final boolean checkModified;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true); //按访问顺序，最久未访问的在前
+    private long size;
+    private long hitCount;
+    private long missCount;
+
+    public ResourceCache(int maxEntries, long maxSize, int maxResourceSize, boolean checkModified) {
+        this.maxEntries = maxEntries;
+        this.maxSize = maxSize;
+        this.maxResourceSize = maxResourceSize;
+        this.checkModified = checkModified;
+    }
+
+    /**
+     * @param loader 缓存未命中时按路径查找资源，找不到返回null
+     * @return 缓存条目，资源不存在时getUrl()返回null
+     */
+    public Entry get(String path, Function<String, URL> loader) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(path);
+            if (entry != null && !isStale(entry)) {
+                hitCount++;
+                return entry;
+            }
+            missCount++;
+        }
+        entry = load(loader.apply(path)); //在锁外做IO
+        if (entry != MISSING || !checkModified) {
+            put(path, entry);
+        }
+        return entry;
+    }
+
+    private boolean isStale(Entry entry) {
+        return checkModified && entry.file != null && entry.file.lastModified() != entry.lastModified;
+    }
+
+    private synchronized void put(String path, Entry entry) {
+        Entry old = entries.put(path, entry);
+        if (old != null) {
+            size -= old.size();
+        }
+        size += entry.size();
+        Iterator<Entry> iterator = entries.values().iterator();
+        while ((entries.size() > maxEntries || size > maxSize) && iterator.hasNext()) {
+            size -= iterator.next().size();
+            iterator.remove();
+        }
+    }
+
+    private Entry load(URL url) {
+        if (url == null) {
+            return MISSING;
+        }
+        File file = toFile(url);
+        long lastModified = file != null ? file.lastModified() : 0;
+        byte[] content = null;
+        if (file == null || file.isFile()) {
+            try {
+                URLConnection connection = url.openConnection();
+                boolean directory = connection instanceof JarURLConnection && ((JarURLConnection) connection).getJarEntry() != null
+                        && ((JarURLConnection) connection).getJarEntry().isDirectory();
+                long length = connection.getContentLengthLong();
+                if (!directory && length >= 0 && length <= maxResourceSize) {
+                    try (InputStream in = connection.getInputStream()) {
+                        content = ByteStreams.toByteArray(in);
+                    }
+                }
+            } catch (IOException e) {
+                content = null; //只缓存URL，读取时再打开
+            }
+        }
+        return new Entry(url, file, content, lastModified);
+    }
+
+    private static File toFile(URL url) {
+        if (!"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            return new File(url.toURI());
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * 缓存条目，内容不可变，可以被多个线程共享
+     */
+    public static class Entry {
+        private final URL url;
+        private final File file; //磁盘上的文件，用于检查修改时间
+        private final byte[] content; //小资源的内容
+        private final long lastModified;
+
+        private Entry(URL url, File file, byte[] content, long lastModified) {
+            this.url = url;
+            this.file = file;
+            this.content = content;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * @return 资源的URL，不存在时返回null
+         */
+        public URL getUrl() {
+            return url;
+        }
+
+        /**
+         * @return 已缓存内容时从内存读取，否则打开URL；资源不存在时返回null
+         */
+        public InputStream openStream() throws IOException {
+            if (content != null) {
+                return new ByteArrayInputStream(content);
+            }
+            return url == null ? null : url.openStream();
+        }
+
+        private long size() {
+            return content == null ? 0 : content.length;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package org.honeycomb.tools.netty.resource;
+
+import io.netty.buffer.ByteBuf;
+import org.honeycomb.tools.netty.utils.MimeTypeUtil;
+
+import java.io.File;
+
+/**
+ * 可以由IO线程直接响应的静态资源：磁盘上的文件（sendfile零拷贝写出），或者缓存在内存里的classpath/jar资源
+ * <p>
+ * User: luluful
+ * Date: 10/18/26
+ */
+public class StaticResource {
+    private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+
+    private final String name; //文件名，用于确定Content-Type
+    private final File file; //磁盘文件，内存资源时为null
+    private final ByteBuf content; //内存中的内容（不可释放），磁盘文件时为null
+    private final long length;
+    private final long lastModified;
+
+    private StaticResource(String name, File file, ByteBuf content, long length, long lastModified) {
+        this.name = name;
+        this.file = file;
+        this.content = content;
+        this.length = length;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * 每次请求重新读取文件的长度和修改时间，文件被修改后ETag随之变化
+     */
+    static StaticResource ofFile(File file) {
+        return new StaticResource(file.getName(), file, null, file.length(), file.lastModified());
+    }
+
+    /**
+     * @param content 不可释放的ByteBuf，由缓存持有
+     */
+    static StaticResource ofContent(String name, ByteBuf content, long lastModified) {
+        return new StaticResource(name, null, content, content.readableBytes(), lastModified);
+    }
+
+    public boolean isFile() {
+        return file != null;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return 内存中的内容，写出时使用slice/duplicate，不要修改读写索引
+     */
+    public ByteBuf getContent() {
+        return content;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getContentType() {
+        String contentType = MimeTypeUtil.getMimeTypeByFileName(name);
+        return contentType != null ? contentType : DEFAULT_CONTENT_TYPE;
+    }
+
+    /**
+     * @return 由长度和修改时间生成的强ETag
+     */
+    public String getETag() {
+        return "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+    }
+}
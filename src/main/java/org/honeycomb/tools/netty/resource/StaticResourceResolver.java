@@ -0,0 +1,254 @@
+package org.honeycomb.tools.netty.resource;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.io.ByteStreams;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * 按配置的位置查找静态资源，位置支持classpath:和file:前缀，与Spring的spring.resources.static-locations写法相同
+ * <p>
+ * 在IO线程上调用{@link #resolve}，不能阻塞：
+ * classpath位置在创建时展开成各个根目录，展开在磁盘上的目录和file:位置一样，每次请求重新stat，用sendfile写出；
+ * jar中的资源在创建时建立索引，请求时只查索引和内存缓存，内容由后台线程读入缓存，读入之前的请求交给Servlet处理。
+ * 超过单个资源大小上限的jar资源始终交给Servlet处理。
+ * 磁盘上未找到的路径短时间内缓存为未命中，避免每个动态请求都去stat文件
+ * <p>
+ * User: luluful
+ * Date: 10/18/26
+ */
+public class StaticResourceResolver implements AutoCloseable {
+    private static final String CLASSPATH_PREFIX = "classpath:";
+    private static final String FILE_PREFIX = "file:";
+    private static final long MISS_TTL_SECONDS = 10; //未命中缓存的有效期，新增的文件最多延迟这么久才能访问到
+    private static final int MAX_MISSES = 10000;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final ClassLoader classLoader;
+    private final List<Object> locations = new ArrayList<>(); //File为磁盘目录，Map为jar中资源的索引，相对路径 -> classpath资源名
+    private final int maxCachedResourceSize;
+    private final Cache<String, Optional<StaticResource>> classpathResources; //jar中资源的内容，按字节数限制总大小
+    private final Cache<String, Boolean> misses;
+    private final Set<String> loading = ConcurrentHashMap.newKeySet(); //正在后台读入的classpath资源名
+    private final ExecutorService loader = Executors.newSingleThreadExecutor(new DefaultThreadFactory("netty-static-resource", true));
+
+    /**
+     * 在调用线程上展开classpath位置、遍历jar中的资源
+     */
+    public StaticResourceResolver(ClassLoader classLoader, List<String> locations, int maxCachedResourceSize, long cacheMaxSize) {
+        this.classLoader = checkNotNull(classLoader);
+        for (String location : locations) {
+            String path = location.endsWith("/") ? location : location + "/";
+            if (path.startsWith(CLASSPATH_PREFIX)) {
+                path = path.substring(CLASSPATH_PREFIX.length());
+                addClasspathLocation(path.startsWith("/") ? path.substring(1) : path);
+            } else {
+                this.locations.add(new File(path.startsWith(FILE_PREFIX) ? path.substring(FILE_PREFIX.length()) : path));
+            }
+        }
+        this.maxCachedResourceSize = maxCachedResourceSize;
+        this.classpathResources = CacheBuilder.newBuilder()
+                .maximumWeight(cacheMaxSize)
+                .<String, Optional<StaticResource>>weigher((key, value) -> value.isPresent() ? (int) Math.max(1, value.get().getLength()) : 1)
+                .build();
+        this.misses = CacheBuilder.newBuilder()
+                .maximumSize(MAX_MISSES)
+                .expireAfterWrite(MISS_TTL_SECONDS, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * 按ClassLoader的查找顺序加入这个位置的每一个根，前面的根中的资源覆盖后面的
+     */
+    private void addClasspathLocation(String prefix) {
+        Enumeration<URL> roots;
+        try {
+            roots = classLoader.getResources(prefix);
+        } catch (IOException e) {
+            log.warn("Failed to list static resource location classpath:/" + prefix, e);
+            return;
+        }
+        while (roots.hasMoreElements()) {
+            URL root = roots.nextElement();
+            try {
+                if ("file".equals(root.getProtocol())) { //展开在磁盘上的classpath目录，开发时修改立即生效
+                    locations.add(new File(root.toURI()));
+                    continue;
+                }
+                URLConnection connection = root.openConnection();
+                if (connection instanceof JarURLConnection) {
+                    locations.add(indexJar((JarURLConnection) connection, prefix));
+                } else {
+                    log.warn("Unsupported static resource location " + root);
+                }
+            } catch (IOException | URISyntaxException | IllegalArgumentException e) {
+                log.warn("Failed to index static resource location " + root, e);
+            }
+        }
+    }
+
+    /**
+     * JarFile由JarURLConnection缓存共享，不能关闭
+     */
+    private Map<String, String> indexJar(JarURLConnection connection, String prefix) throws IOException {
+        String entryPrefix = connection.getEntryName() == null ? "" : connection.getEntryName();
+        Map<String, String> index = new HashMap<>();
+        Enumeration<JarEntry> entries = connection.getJarFile().entries();
+        while (entries.hasMoreElements()) {
+            JarEntry entry = entries.nextElement();
+            String name = entry.getName();
+            if (!entry.isDirectory() && name.startsWith(entryPrefix) && name.length() > entryPrefix.length()) {
+                String relativePath = name.substring(entryPrefix.length());
+                index.put(relativePath, prefix + relativePath);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @param path 已解码、去掉contextPath的请求路径，以/开头
+     * @return 找不到或者不适合由IO线程直接响应时返回null
+     */
+    @SuppressWarnings("unchecked")
+    public StaticResource resolve(String path) {
+        if (!isSafe(path) || misses.getIfPresent(path) != null) {
+            return null;
+        }
+        String relativePath = path.substring(1);
+        for (Object location : locations) {
+            if (location instanceof File) {
+                StaticResource resource = resolveFile((File) location, relativePath);
+                if (resource != null) {
+                    return resource;
+                }
+            } else {
+                String name = ((Map<String, String>) location).get(relativePath);
+                if (name != null) { //前面的位置已经有这个资源，不再查找后面的位置
+                    return resolveClasspath(name);
+                }
+            }
+        }
+        misses.put(path, Boolean.TRUE);
+        return null;
+    }
+
+    /**
+     * 拒绝目录、..、反斜杠和空字符，防止访问配置位置以外的文件
+     */
+    private boolean isSafe(String path) {
+        if (!path.startsWith("/") || path.endsWith("/") || path.indexOf('\\') >= 0 || path.indexOf('\0') >= 0) {
+            return false;
+        }
+        for (String segment : path.split("/")) {
+            if ("..".equals(segment) || ".".equals(segment)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private StaticResource resolveFile(File base, String relativePath) {
+        File file = new File(base, relativePath);
+        if (!file.isFile() || !file.canRead()) {
+            return null;
+        }
+        try {
+            if (!file.getCanonicalPath().startsWith(base.getCanonicalPath() + File.separator)) {
+                return null; //符号链接指向了配置位置以外
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return StaticResource.ofFile(file);
+    }
+
+    /**
+     * 内容还没有读入缓存时交给后台线程读取，这次请求交给Servlet处理
+     */
+    private StaticResource resolveClasspath(String name) {
+        Optional<StaticResource> cached = classpathResources.getIfPresent(name);
+        if (cached != null) {
+            return cached.orElse(null);
+        }
+        if (loading.add(name)) {
+            try {
+                loader.execute(() -> {
+                    try {
+                        classpathResources.put(name, Optional.ofNullable(load(name)));
+                    } catch (IOException | RuntimeException e) {
+                        log.warn("Failed to load static resource " + name, e);
+                    } finally {
+                        loading.remove(name);
+                    }
+                });
+            } catch (RejectedExecutionException e) { //已经关闭
+                loading.remove(name);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 把jar中的资源读入堆外内存，包装成不可释放的ByteBuf，由GC回收
+     */
+    private StaticResource load(String name) throws IOException {
+        URL url = classLoader.getResource(name);
+        if (url == null) {
+            return null;
+        }
+        URLConnection connection = url.openConnection();
+        if (connection instanceof JarURLConnection && ((JarURLConnection) connection).getJarEntry().isDirectory()) {
+            return null;
+        }
+        long length = connection.getContentLengthLong();
+        if (length < 0 || length > maxCachedResourceSize) {
+            return null;
+        }
+        byte[] bytes;
+        try (InputStream in = connection.getInputStream()) {
+            bytes = ByteStreams.toByteArray(in);
+        }
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        ByteBuf content = Unpooled.unreleasableBuffer(Unpooled.wrappedBuffer(direct));
+        String fileName = name.substring(name.lastIndexOf('/') + 1);
+        return StaticResource.ofContent(fileName, content, connection.getLastModified());
+    }
+
+    /**
+     * 停止后台读取，已经缓存的资源继续可用
+     */
+    @Override
+    public void close() {
+        loader.shutdownNow();
+    }
+}
@@ -1,17 +1,27 @@
 package org.honeycomb.tools.netty.response;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
 import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.EmptyHttpHeaders;
+import io.netty.handler.codec.http.FullHttpResponse;
 import io.netty.handler.codec.http.HttpResponse;
 import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import org.honeycomb.tools.netty.core.ConnectionCloseReason;
+import org.honeycomb.tools.netty.core.SequencedMessage;
+import org.honeycomb.tools.netty.request.HttpRequestInputStream;
 
 import javax.servlet.ServletOutputStream;
 import javax.servlet.WriteListener;
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
@@ -25,107 +35,231 @@ public class HttpResponseOutputStream extends ServletOutputStream {
 
     private final ChannelHandlerContext ctx;
     private final NettyHttpServletResponse servletResponse;
-    private WriteListener writeListener; //监听器，暂时没处理
-    HttpResponseOutputStream(ChannelHandlerContext ctx, NettyHttpServletResponse servletResponse) {
+    private final WritabilityMonitor writabilityMonitor; //出站缓冲超过高水位时阻塞写线程
+    private final HttpRequestInputStream requestInputStream; //响应结束时丢弃未读的请求体
+    private final int sequence; //请求在连接上的序号，所有写操作都带上序号，由ResponseSequencer排序
+    private final long startNanos = System.nanoTime(); //请求被接收的时间，用于自适应并发上限统计耗时
+    private volatile WriteListener writeListener; //非阻塞写的监听器
+    private final AtomicBoolean writePossiblePending = new AtomicBoolean(); //已经登记了可写回调，isReady()连续返回false时只登记一次
+    private final AtomicBoolean requestCompleted = new AtomicBoolean(); //请求完成的统计只做一次
+    private final ChannelFutureListener closeListener = f -> requestCompleted(false); //响应没写完连接就断开了
+
+    HttpResponseOutputStream(ChannelHandlerContext ctx, NettyHttpServletResponse servletResponse, WritabilityMonitor writabilityMonitor,
+                             HttpRequestInputStream requestInputStream, int sequence) {
         this.ctx = ctx;
         this.servletResponse = servletResponse;
-        this.buf = new byte[DEFAULT_BUFFER_SIZE];
+        this.writabilityMonitor = writabilityMonitor;
+        this.requestInputStream = requestInputStream;
+        this.sequence = sequence;
+        ctx.channel().closeFuture().addListener(closeListener); //写响应失败或异步请求一直没有结束时，连接关闭也能释放并发名额
     }
 
+    /**
+     * 连接出站缓冲未超过高水位时可写；非阻塞模式下返回false后，恢复可写时回调onWritePossible
+     */
     @Override
     public boolean isReady() {
-        return true; // TODO implement
+        if (closed) {
+            return false;
+        }
+        boolean ready = ctx.channel().isWritable();
+        if (!ready) {
+            ctx.flush(); //未flush的数据也计入高水位，必须先flush，否则连接不会恢复可写
+            if (writeListener != null && writePossiblePending.compareAndSet(false, true)) {
+                writabilityMonitor.notifyWhenWritable(this::notifyWritePossible);
+            }
+        }
+        return ready;
     }
 
+    /**
+     * 设置后进入非阻塞模式，写操作不再等待连接可写，立即回调一次onWritePossible
+     */
     @Override
     public void setWriteListener(WriteListener writeListener) {
         checkNotNull(writeListener);
-        if(this.writeListener != null){
-            return; //只能设置一次
-        }
+        checkState(this.writeListener == null, "WriteListener has already been set");
+        checkState(servletResponse.getRequest().isAsyncStarted(), "WriteListener requires an async request");
         this.writeListener = writeListener;
-        // TODO ISE when called more than once
-        // TODO ISE when associated request is not async
+        writabilityMonitor.getListenerExecutor().execute(this::notifyWritePossible);
+    }
+
+    private void notifyWritePossible() {
+        writePossiblePending.set(false);
+        WriteListener listener = writeListener;
+        try {
+            if (!ctx.channel().isActive()) {
+                listener.onError(new IOException("Channel is not active"));
+                return;
+            }
+            listener.onWritePossible();
+        } catch (Throwable t) {
+            listener.onError(t);
+        }
     }
 
-    private byte[] buf; //缓冲区
-    private int count; //缓冲区游标（记录写到哪里）
+    private CompositeByteBuf buf; //缓冲区，第一次写入时从ctx.alloc()分配，按需追加组件扩容，flush时直接交给Netty写出
+    private int bufferSize = DEFAULT_BUFFER_SIZE; //缓冲区大小上限，超过则flush
     private int totalLength;//内容总长度
     private boolean closed; //是否已经调用close()方法关闭输出流
 
     @Override
     public void write(byte[] b, int off, int len) throws IOException {
         totalLength += len;
-        if (len > count) {
+        if (len >= bufferSize) {
             flushBuffer();
-            ByteBuf content = ctx.alloc().buffer(len);
-            content.writeBytes(b, off, len);
-            writeContent(content, false);
+            //按缓冲区大小分段写出，每段都等待连接可写，单个连接占用的出站内存不随响应大小增长
+            while (len > 0) {
+                int chunkLength = Math.min(len, bufferSize);
+                ByteBuf content = ctx.alloc().buffer(chunkLength);
+                content.writeBytes(b, off, chunkLength);
+                writeContent(content, false);
+                off += chunkLength;
+                len -= chunkLength;
+            }
             return;
         }
         writeBufferIfNeeded(len);
-        System.arraycopy(b, off, buf, count, len); //输入的b复制到缓存buf
-        count += len;
+        buffer().writeBytes(b, off, len); //输入的b直接写入池化的缓冲区
     }
 
     @Override
     public void write(int b) throws IOException {
         writeBufferIfNeeded(1);
-        buf[count++] = (byte) b;
+        buffer().writeByte(b);
         totalLength++;
     }
 
+    private CompositeByteBuf buffer() {
+        if (buf == null) {
+            buf = ctx.alloc().compositeBuffer();
+        }
+        return buf;
+    }
+
     private void writeBufferIfNeeded(int len) throws IOException {
-        if (len > buf.length - count) { //buffer剩余空间不足则flush
+        if (buf != null && len > bufferSize - buf.readableBytes()) { //buffer剩余空间不足则flush
             flushBuffer();
         }
     }
 
+    /**
+     * 把缓冲区交给Netty并立即写到连接上
+     */
     @Override
     public void flush() throws IOException {
         flushBuffer();
+        ctx.flush();
     }
 
-    private void flushBuffer() {
+    private void flushBuffer() throws IOException {
         flushBuffer(false);
     }
 
-    private void flushBuffer(boolean lastContent) {
-        if (count > 0) {
-            ByteBuf content = ctx.alloc().buffer(count);
-            content.writeBytes(buf, 0, count);//buf写入ByteBuf
-            count = 0;//游标归位
+    private void flushBuffer(boolean lastContent) throws IOException {
+        if (buf != null && buf.isReadable()) {
+            ByteBuf content = buf; //缓冲区整体交给Netty写出，不再复制
+            buf = null;
             writeContent(content, lastContent);
         } else if (lastContent) { //如果是最后一次flush，即便内容为空也要执行ctx.write写入EMPTY_LAST_CONTENT
             writeContent(Unpooled.EMPTY_BUFFER, true);
         }
     }
 
-    private void writeContent(ByteBuf content, boolean lastContent) {
-        // TODO block if channel is not writable to avoid heap utilisation
+    private void awaitWritable(ByteBuf content) throws IOException {
+        if (writeListener == null) { //非阻塞模式由Servlet通过isReady()控制写入节奏
+            if (!ctx.channel().isWritable()) {
+                ctx.flush(); //已经write但未flush的数据也计入高水位，不flush的话只能等到写超时
+            }
+            try {
+                writabilityMonitor.awaitWritable(); //客户端读得慢时阻塞，避免出站缓冲无限增长
+            } catch (IOException e) {
+                content.release();
+                throw e;
+            }
+        }
+    }
+
+    private void writeContent(ByteBuf content, boolean lastContent) throws IOException {
+        awaitWritable(content);
         if (!servletResponse.isCommitted()) {
             writeResponse(lastContent);
         }
         if (content.readableBytes() > 0) {
             assert content.refCnt() == 1;
-            ctx.write(content, ctx.voidPromise());
+            write(content, ctx.voidPromise());
         }
         if (lastContent) {
-            HttpResponse nettyResponse = servletResponse.getNettyResponse();
-            ChannelFuture future = ctx.write(DefaultLastHttpContent.EMPTY_LAST_CONTENT);
-            if (!HttpUtil.isKeepAlive(nettyResponse)) {
-                future.addListener(ChannelFutureListener.CLOSE);//如果不是keep-alive，写完后关闭channel
-            }
+            write(DefaultLastHttpContent.EMPTY_LAST_CONTENT, newCompletionPromise());
         }
     }
 
-    private void writeResponse(boolean lastContent) {
+    /**
+     * 响应还没有写出过任何内容时，把响应头和缓冲区合并成一个FullHttpResponse，只提交一次IO任务
+     */
+    private void writeFullResponse() throws IOException {
+        ByteBuf content = buf != null ? buf : Unpooled.EMPTY_BUFFER;
+        buf = null;
+        awaitWritable(content);
         HttpResponse response = servletResponse.getNettyResponse();
-        // 设置content-length头
         if (!HttpUtil.isContentLengthSet(response)) {
-            HttpUtil.setContentLength(response, totalLength);
+            HttpUtil.setContentLength(response, content.readableBytes());
+        }
+        FullHttpResponse fullResponse = new DefaultFullHttpResponse(response.protocolVersion(), response.status(), content,
+                response.headers(), EmptyHttpHeaders.INSTANCE);
+        write(fullResponse, newCompletionPromise());
+        ctx.flush();
+    }
+
+    /**
+     * 响应最后一次写操作的promise。监听器在写之前加上，写完时直接在IO线程上执行，
+     * 保证同一连接上的下一个请求到达之前已经释放了并发名额
+     */
+    private ChannelPromise newCompletionPromise() {
+        ChannelPromise promise = ctx.newPromise();
+        promise.addListener(f -> requestCompleted(f.isSuccess())); //响应写完才算请求完成
+        if (!HttpUtil.isKeepAlive(servletResponse.getNettyResponse())) {
+            ConnectionCloseReason reason = servletResponse.getConnectionTracker().isDraining()
+                    ? ConnectionCloseReason.SHUTDOWN : ConnectionCloseReason.NOT_KEEP_ALIVE;
+            promise.addListener(f -> ConnectionCloseReason.close(ctx.channel(), reason));//如果不是keep-alive，写完后关闭channel
+        }
+        return promise;
+    }
+
+    /**
+     * 释放连接上的请求计数和自适应并发名额，响应写完、写响应失败、连接断开都会调用，只有第一次生效
+     */
+    private void requestCompleted(boolean success) {
+        if (requestCompleted.compareAndSet(false, true)) {
+            ctx.channel().closeFuture().removeListener(closeListener);
+            servletResponse.getConnectionTracker().requestCompleted(ctx.channel());
+            servletResponse.getAdmissionControl().requestCompleted(startNanos, success);
+        }
+    }
+
+    /**
+     * 写出响应头：应用设置了Content-Length或者已经写完全部内容时使用准确的长度，
+     * 否则HTTP/1.1使用chunked编码，HTTP/1.0不支持chunked，由关闭连接标识响应结束
+     */
+    private void writeResponse(boolean lastContent) {
+        HttpResponse response = servletResponse.getNettyResponse();
+        if (!HttpUtil.isContentLengthSet(response) && !HttpUtil.isTransferEncodingChunked(response)) {
+            if (lastContent) {
+                HttpUtil.setContentLength(response, totalLength);
+            } else if (HttpVersion.HTTP_1_0.text().equals(servletResponse.getRequest().getProtocol())) {
+                HttpUtil.setKeepAlive(response, false);
+            } else {
+                HttpUtil.setTransferEncodingChunked(response, true);
+            }
         }
-        ctx.write(response, ctx.voidPromise());
+        write(response, ctx.voidPromise());
+    }
+
+    /**
+     * pipelining下前面的响应还没写完时，ResponseSequencer会暂存这次写操作
+     */
+    private ChannelFuture write(Object message, ChannelPromise promise) {
+        return ctx.write(new SequencedMessage(sequence, message), promise);
     }
 
     @Override
@@ -134,26 +268,44 @@ public class HttpResponseOutputStream extends ServletOutputStream {
             return;
         }
         try {
-            flushBuffer(true);
-            ctx.flush();
+            requestInputStream.discardUnreadContent();
+            if (servletResponse.isCommitted()) {
+                flushBuffer(true);
+                ctx.flush();
+            } else {
+                writeFullResponse();
+            }
+        } catch (IOException | RuntimeException e) { //客户端断开或写超时，响应不会再写完
+            requestCompleted(false);
+            throw e;
         } finally {
-            buf = null;
+            releaseBuffer();
         }
         closed = true;
     }
 
+    private void releaseBuffer() {
+        if (buf != null) {
+            buf.release();
+            buf = null;
+        }
+    }
+
     void resetBuffer() {
         assert !servletResponse.isCommitted();
-        count = 0;
+        if (buf != null) {
+            totalLength -= buf.readableBytes();
+        }
+        releaseBuffer();
     }
 
     int getBufferSize() {
-        return buf.length;
+        return bufferSize;
     }
 
     void setBufferSize(int size) {
         assert !servletResponse.isCommitted();
-        checkState(count == 0, "Response body content has been written");
-        buf = new byte[size];
+        checkState(buf == null || !buf.isReadable(), "Response body content has been written");
+        bufferSize = size;
     }
 }
@@ -8,7 +8,10 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.*;
 import io.netty.util.AsciiString;
 import io.netty.util.concurrent.FastThreadLocal;
+import org.honeycomb.tools.netty.core.AdmissionControl;
+import org.honeycomb.tools.netty.core.ConnectionTracker;
 import org.honeycomb.tools.netty.core.NettyContext;
+import org.honeycomb.tools.netty.core.ServletContentHandler;
 import org.honeycomb.tools.netty.request.NettyHttpServletRequest;
 import org.honeycomb.tools.netty.session.NettyHttpSession;
 
@@ -46,6 +49,8 @@ public class NettyHttpServletResponse implements HttpServletResponse {
     private static final String DEFAULT_CHARACTER_ENCODING = Charsets.UTF_8.name();
 
     private final NettyContext servletContext;
+    private final ConnectionTracker connectionTracker;
+    private final AdmissionControl admissionControl;
     private NettyHttpServletRequest request;
 
     private HttpResponse response;
@@ -63,13 +68,16 @@ public class NettyHttpServletResponse implements HttpServletResponse {
      * 构造方法
      *
      * @param ctx            Netty的Context
-     * @param servletContext ServletContext
+     * @param handler        当前连接的ServletContentHandler，提供ServletContext和连接状态
      * @param response       Netty自带的http响应对象，初始化为200
+     * @param sequence       请求在连接上的序号，响应按序号顺序写出
      */
-    public NettyHttpServletResponse(ChannelHandlerContext ctx, NettyContext servletContext, HttpResponse response) {
-        this.servletContext = servletContext;
+    public NettyHttpServletResponse(ChannelHandlerContext ctx, ServletContentHandler handler, HttpResponse response, int sequence) {
+        this.servletContext = handler.getServletContext();
+        this.connectionTracker = handler.getConnectionTracker();
+        this.admissionControl = handler.getAdmissionControl();
         this.response = response;
-        this.outputStream = new HttpResponseOutputStream(ctx, this);
+        this.outputStream = new HttpResponseOutputStream(ctx, this, handler.getWritabilityMonitor(), handler.getInputStream(), sequence);
         cookies = new ArrayList<>();
     }
 
@@ -82,6 +90,9 @@ public class NettyHttpServletResponse implements HttpServletResponse {
         }
         committed = true;
         HttpHeaders headers = response.headers();
+        if (connectionTracker.isDraining()) {
+            HttpUtil.setKeepAlive(response, false); //停机排空期间，响应写完后关闭连接
+        }
         if (null != contentType) {
             String value = null == characterEncoding ? contentType : contentType + "; charset=" + characterEncoding; //Content Type 响应头的内容
             headers.set(HttpHeaderNames.CONTENT_TYPE, value);
@@ -109,6 +120,18 @@ public class NettyHttpServletResponse implements HttpServletResponse {
         return response;
     }
 
+    AdmissionControl getAdmissionControl() {
+        return admissionControl;
+    }
+
+    ConnectionTracker getConnectionTracker() {
+        return connectionTracker;
+    }
+
+    NettyHttpServletRequest getRequest() {
+        return request;
+    }
+
     public NettyHttpServletResponse setRequest(NettyHttpServletRequest request) {
         this.request = request;
         return this;
@@ -0,0 +1,102 @@
+package org.honeycomb.tools.netty.response;
+
+import io.netty.channel.Channel;
+import org.honeycomb.tools.netty.core.ConnectionCloseReason;
+
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * 连接的可写状态监视器，Servlet线程写响应时如果出站缓冲超过高水位则阻塞等待，
+ * 直到IO线程把缓冲写到低水位以下（channelWritabilityChanged）或连接断开；
+ * 非阻塞模式下不等待，而是在恢复可写时通过listenerExecutor回调一次。
+ * 一个连接上流水线的多个响应共用同一个监视器，每个响应登记的回调都会执行
+ * <p>
+ * User: luluful
+ * Date: 10/18/26
+ */
+public class WritabilityMonitor {
+    private final Channel channel;
+    private final long timeoutNanos; //阻塞等待的最长时间
+    private final Executor listenerExecutor; //执行可写回调的Executor
+    private final Queue<Runnable> writableCallbacks = new ConcurrentLinkedQueue<>(); //恢复可写时各执行一次的回调
+
+    public WritabilityMonitor(Channel channel, long timeout, TimeUnit unit, Executor listenerExecutor) {
+        this.channel = checkNotNull(channel);
+        this.timeoutNanos = unit.toNanos(timeout);
+        this.listenerExecutor = checkNotNull(listenerExecutor);
+    }
+
+    /**
+     * 由IO线程在channelWritabilityChanged和channelInactive时调用，唤醒等待的Servlet线程
+     */
+    public void writabilityChanged() {
+        if (channel.isWritable() || !channel.isActive()) {
+            synchronized (this) {
+                notifyAll();
+            }
+            fireWritableCallbacks();
+        }
+    }
+
+    /**
+     * 登记一个回调，连接恢复可写或断开时在listenerExecutor上执行一次
+     */
+    void notifyWhenWritable(Runnable callback) {
+        writableCallbacks.add(checkNotNull(callback));
+        //登记前状态可能已经变化，再检查一次，避免错过通知
+        if (channel.isWritable() || !channel.isActive()) {
+            fireWritableCallbacks();
+        }
+    }
+
+    /**
+     * 取出所有已登记的回调，每个回调只会被取出一次
+     */
+    private void fireWritableCallbacks() {
+        Runnable callback;
+        while ((callback = writableCallbacks.poll()) != null) {
+            listenerExecutor.execute(callback);
+        }
+    }
+
+    Executor getListenerExecutor() {
+        return listenerExecutor;
+    }
+
+    /**
+     * 等待连接可写，在IO线程上调用时直接返回，不能阻塞IO线程
+     *
+     * @throws IOException 等待超时或连接已断开
+     */
+    void awaitWritable() throws IOException {
+        if (channel.isWritable() || channel.eventLoop().inEventLoop()) {
+            return;
+        }
+        long deadline = System.nanoTime() + timeoutNanos;
+        synchronized (this) {
+            while (!channel.isWritable() && channel.isActive()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    ConnectionCloseReason.close(channel, ConnectionCloseReason.WRITE_TIMEOUT);
+                    throw new IOException("Timed out after " + TimeUnit.NANOSECONDS.toMillis(timeoutNanos)
+                            + " ms waiting for the client to read the response");
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for channel to become writable", e);
+                }
+            }
+        }
+        if (!channel.isActive()) {
+            throw new IOException("Channel is not active");
+        }
+    }
+}
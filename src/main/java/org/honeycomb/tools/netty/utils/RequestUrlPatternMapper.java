@@ -5,23 +5,25 @@ import org.slf4j.LoggerFactory;
 
 import javax.servlet.Servlet;
 import javax.servlet.ServletException;
-import java.io.IOException;
-import java.util.*;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
+ * 维护url-pattern到Servlet的映射
+ * <p>
+ * 路由使用不可变的{@link UrlPatternRouter}快照，通过volatile字段发布。
+ * 增加和删除映射在调用线程上加锁修改映射表并重新编译完整的快照，请求线程只读取当前快照，不加锁，
+ * 已经拿到旧快照的请求继续按旧的映射处理。映射可以在运行时修改
+ * <p>
  * User: luluful
  * Date: 4/8/19
  */
 public class RequestUrlPatternMapper {
     private final Logger log = LoggerFactory.getLogger(getClass());
 
-    private UrlPatternContext urlPatternContext;
-    private String contextPath;
-
-    public RequestUrlPatternMapper(String contextPath) {
-        this.urlPatternContext = new UrlPatternContext();
-        this.contextPath = contextPath;
-    }
+    private final Map<String, ServletRoute> routes = new LinkedHashMap<>(); //url-pattern -> 路由，只在持有锁时访问
+    private volatile UrlPatternRouter router = new UrlPatternRouter(Collections.emptyList());
 
     /**
      * 增加映射关系
@@ -29,223 +31,57 @@ public class RequestUrlPatternMapper {
      * @param urlPattern  urlPattern
      * @param servlet     servlet对象
      * @param servletName servletName
+     * @return 包含新映射的路由表快照
      * @author Leibniz
      */
-    public void addServlet(String urlPattern, Servlet servlet, String servletName) throws ServletException {
-        if (urlPattern.endsWith("/*")) {
-            // 路径匹配
-            String pattern = urlPattern.substring(0, urlPattern.length() - 1);
-            for (MappedServlet ms : urlPatternContext.wildcardServlets) {
-                if (ms.pattern.equals(pattern)) {
-                    throw new ServletException("URL Pattern('" + urlPattern + "') already exists!");
-                }
-            }
-            MappedServlet newServlet = new MappedServlet(pattern, servlet, servletName);
-            urlPatternContext.wildcardServlets.add(newServlet);
-            urlPatternContext.wildcardServlets.sort((o1, o2) -> o2.pattern.compareTo(o1.pattern));
-            log.debug("Curretn Wildcard URL Pattern List = " + Arrays.toString(urlPatternContext.wildcardServlets.toArray()));
-        } else if (urlPattern.startsWith("*.")) {
-            // 扩展名匹配
-            String pattern = urlPattern.substring(2);
-            if (urlPatternContext.extensionServlets.get(pattern) != null) {
-                throw new ServletException("URL Pattern('" + urlPattern + "') already exists!");
-            }
-            MappedServlet newServlet = new MappedServlet(pattern, servlet, servletName);
-            urlPatternContext.extensionServlets.put(pattern, newServlet);
-            log.debug("Curretn Extension URL Pattern List = " + Arrays.toString(urlPatternContext.extensionServlets.keySet().toArray()));
-        } else if (urlPattern.equals("/")) {
-            // Default资源匹配
-            if (urlPatternContext.defaultServlet != null) {
-                throw new ServletException("URL Pattern('" + urlPattern + "') already exists!");
-            }
-            urlPatternContext.defaultServlet = new MappedServlet("", servlet, servletName);
-        } else {
-            // 精确匹配
-            String pattern;
-            if (urlPattern.length() == 0) {
-                pattern = "/";
-            } else {
-                pattern = urlPattern;
-            }
-            if (urlPatternContext.exactServlets.get(pattern) != null) {
-                throw new ServletException("URL Pattern('" + urlPattern + "') already exists!");
-            }
-            MappedServlet newServlet = new MappedServlet(pattern, servlet, servletName);
-            urlPatternContext.exactServlets.put(pattern, newServlet);
-            log.debug("Curretn Exact URL Pattern List = " + Arrays.toString(urlPatternContext.exactServlets.keySet().toArray()));
+    public synchronized UrlPatternRouter addServlet(String urlPattern, Servlet servlet, String servletName) throws ServletException {
+        ServletRoute route;
+        try {
+            route = ServletRoute.of(urlPattern, servletName, servlet);
+        } catch (IllegalArgumentException e) {
+            throw new ServletException(e.getMessage(), e);
         }
+        if (routes.containsKey(urlPattern)) {
+            throw new ServletException("URL Pattern('" + urlPattern + "') already exists!");
+        }
+        routes.put(urlPattern, route);
+        log.debug("Added servlet mapping {}", route);
+        return publish();
     }
 
     /**
      * 删除映射关系
      *
      * @param urlPattern
+     * @return 删除后的路由表快照，映射不存在时为当前快照
      */
-    public void removeServlet(String urlPattern) {
-        if (urlPattern.endsWith("/*")) {
-            //路径匹配
-            String pattern = urlPattern.substring(0, urlPattern.length() - 2);
-            urlPatternContext.wildcardServlets.removeIf(mappedServlet -> mappedServlet.pattern.equals(pattern));
-        } else if (urlPattern.startsWith("*.")) {
-            // 扩展名匹配
-            String pattern = urlPattern.substring(2);
-            urlPatternContext.extensionServlets.remove(pattern);
-        } else if (urlPattern.equals("/")) {
-            // Default资源匹配
-            urlPatternContext.defaultServlet = null;
-        } else {
-            // 精确匹配
-            String pattern;
-            if (urlPattern.length() == 0) {
-                pattern = "/";
-            } else {
-                pattern = urlPattern;
-            }
-            urlPatternContext.exactServlets.remove(pattern);
-        }
-    }
-
-    public String getServletNameByRequestURI(String absoluteUri) {
-        MappingData mappingData = new MappingData();
-        try {
-            matchRequestPath(absoluteUri, mappingData);
-        } catch (IOException e) {
-            log.error("Throwing exception when getting Servlet Name by request URI, maybe cause by lacking of buffer size.", e);
-        }
-        return mappingData.servletName;
-    }
-
-    /**
-     * Wrapper mapping.
-     *
-     * @throws IOException buffer大小不足
-     */
-    private void matchRequestPath(String absolutePath, MappingData mappingData) throws IOException {
-        // 处理ContextPath，获取访问的相对URI
-        boolean noServletPath = absolutePath.equals(contextPath) || absolutePath.equals(contextPath + "/");
-        if (!absolutePath.startsWith(contextPath)) {
-            return;
-        }
-        String path = noServletPath ? "/" : absolutePath.substring(contextPath.length());
-        //去掉查询字符串
-        int queryInx = path.indexOf('?');
-        if(queryInx > -1){
-            path = path.substring(0, queryInx);
-        }
-
-        // 优先进行精确匹配
-        internalMapExactWrapper(urlPatternContext.exactServlets, path, mappingData);
-
-        // 然后进行路径匹配
-        if (mappingData.servlet == null) {
-            internalMapWildcardWrapper(urlPatternContext.wildcardServlets, path, mappingData);
-            //TODO 暂不考虑JSP的处理
-        }
-
-        if (mappingData.servlet == null && noServletPath) {
-            // 路径为空时，重定向到“/”
-            mappingData.servlet = urlPatternContext.defaultServlet.object;
-            mappingData.servletName = urlPatternContext.defaultServlet.servletName;
-            return;
-        }
-
-        // 后缀名匹配
-        if (mappingData.servlet == null) {
-            internalMapExtensionWrapper(urlPatternContext.extensionServlets, path, mappingData);
-        }
-
-        //TODO 暂不考虑Welcome资源
-
-        // Default Servlet
-        if (mappingData.servlet == null) {
-            if (urlPatternContext.defaultServlet != null) {
-                mappingData.servlet = urlPatternContext.defaultServlet.object;
-                mappingData.servletName = urlPatternContext.defaultServlet.servletName;
-            }
-            //TODO 暂不考虑请求静态目录资源
-            if (path.charAt(path.length() - 1) != '/') {
-            }
+    public synchronized UrlPatternRouter removeServlet(String urlPattern) {
+        ServletRoute route = routes.remove(urlPattern);
+        if (route == null) {
+            return router;
         }
+        log.debug("Removed servlet mapping {}", route);
+        return publish();
     }
 
-
-    /**
-     * 精确匹配
-     */
-    private void internalMapExactWrapper(Map<String, MappedServlet> servlets, String path, MappingData mappingData) {
-        MappedServlet servlet = servlets.get(path);
-        if (servlet != null) {
-            mappingData.servlet = servlet.object;
-            mappingData.servletName = servlet.servletName;
-        }
+    private UrlPatternRouter publish() {
+        UrlPatternRouter compiled = new UrlPatternRouter(routes.values());
+        router = compiled;
+        return compiled;
     }
 
     /**
-     * 路径匹配
+     * @return 当前的路由表快照
      */
-    private void internalMapWildcardWrapper(List<MappedServlet> servlets, String path, MappingData mappingData) {
-        if (!path.endsWith("/")) {
-            path = path + "/";
-        }
-        MappedServlet result = null;
-        for (MappedServlet ms : servlets) {
-            if (path.startsWith(ms.pattern)) {
-                result = ms;
-                break;
-            }
-        }
-        if (result != null) {
-            mappingData.servlet = result.object;
-            mappingData.servletName = result.servletName;
-        }
+    public UrlPatternRouter getRouter() {
+        return router;
     }
 
     /**
-     * 后缀名匹配
-     */
-    private void internalMapExtensionWrapper(Map<String, MappedServlet> servlets, String path, MappingData mappingData) {
-        int dotInx = path.lastIndexOf('.');
-        path = path.substring(dotInx + 1);
-        MappedServlet servlet = servlets.get(path);
-        if (servlet != null) {
-            mappingData.servlet = servlet.object;
-            mappingData.servletName = servlet.servletName;
-        }
-    }
-
-    /*
-     * 以下是用到的内部类
+     * @param path 以/开头的请求路径，去掉了contextPath和查询字符串
+     * @return 匹配的路由，包含Servlet以及计算ServletPath和PathInfo的方式，没有匹配时为null
      */
-
-    private class UrlPatternContext {
-        MappedServlet defaultServlet = null; //默认Servlet
-        Map<String, MappedServlet> exactServlets = new HashMap<>(); //精确匹配
-        List<MappedServlet> wildcardServlets = new LinkedList<>(); //路径匹配
-        Map<String, MappedServlet> extensionServlets = new HashMap<>(); //扩展名匹配
-    }
-
-    private class MappedServlet extends MapElement<Servlet> {
-        @Override
-        public String toString() {
-            return pattern;
-        }
-
-        String servletName;
-
-        MappedServlet(String name, Servlet servlet, String servletName) {
-            super(name, servlet);
-            this.servletName = servletName;
-        }
-    }
-
-    private class MapElement<T> {
-        final String pattern;
-        final T object;
-
-        MapElement(String pattern, T object) {
-            this.pattern = pattern;
-            this.object = object;
-        }
+    public ServletRoute match(String path) {
+        return router.route(path);
     }
-
-}
\ No newline at end of file
+}
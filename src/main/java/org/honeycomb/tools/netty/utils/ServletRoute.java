@@ -0,0 +1,103 @@
+package org.honeycomb.tools.netty.utils;
+
+import javax.servlet.Servlet;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * 一个url-pattern到Servlet的映射，不可变，路由时直接返回这个对象，不需要为每个请求创建匹配结果
+ * <p>
+ * ServletPath和PathInfo按Servlet规范由匹配方式决定：
+ * 精确匹配和扩展名匹配、默认Servlet的ServletPath是整个路径，PathInfo为null；
+ * 路径匹配的ServletPath是/*之前的部分，剩下的是PathInfo
+ * <p>
+ * User: luluful
+ * Date: 10/18/26
+ */
+public final class ServletRoute {
+
+    public enum MatchType {
+        EXACT, PATH, EXTENSION, DEFAULT
+    }
+
+    private final String urlPattern;
+    private final String servletName;
+    private final Servlet servlet;
+    private final MatchType matchType;
+    private final String key; //EXACT为完整路径，PATH为/*之前的部分，EXTENSION为扩展名，DEFAULT为空字符串
+
+    private ServletRoute(String urlPattern, String servletName, Servlet servlet, MatchType matchType, String key) {
+        this.urlPattern = urlPattern;
+        this.servletName = checkNotNull(servletName);
+        this.servlet = checkNotNull(servlet);
+        this.matchType = matchType;
+        this.key = key;
+    }
+
+    /**
+     * @throws IllegalArgumentException url-pattern不合法
+     */
+    public static ServletRoute of(String urlPattern, String servletName, Servlet servlet) {
+        checkNotNull(urlPattern);
+        if (urlPattern.equals("/")) {
+            return new ServletRoute(urlPattern, servletName, servlet, MatchType.DEFAULT, "");
+        }
+        if (urlPattern.startsWith("*.")) {
+            String extension = urlPattern.substring(2);
+            checkArgument(!extension.isEmpty() && extension.indexOf('/') < 0, "Invalid URL pattern '%s'", urlPattern);
+            return new ServletRoute(urlPattern, servletName, servlet, MatchType.EXTENSION, extension);
+        }
+        if (urlPattern.isEmpty()) { //空字符串映射到Context根路径
+            return new ServletRoute(urlPattern, servletName, servlet, MatchType.EXACT, "/");
+        }
+        checkArgument(urlPattern.startsWith("/"), "URL pattern '%s' must start with '/'", urlPattern);
+        if (urlPattern.endsWith("/*")) {
+            return new ServletRoute(urlPattern, servletName, servlet, MatchType.PATH, urlPattern.substring(0, urlPattern.length() - 2));
+        }
+        checkArgument(urlPattern.indexOf('*') < 0, "Invalid URL pattern '%s'", urlPattern);
+        return new ServletRoute(urlPattern, servletName, servlet, MatchType.EXACT, urlPattern);
+    }
+
+    public String getUrlPattern() {
+        return urlPattern;
+    }
+
+    public String getServletName() {
+        return servletName;
+    }
+
+    public Servlet getServlet() {
+        return servlet;
+    }
+
+    public MatchType getMatchType() {
+        return matchType;
+    }
+
+    String getKey() {
+        return key;
+    }
+
+    /**
+     * @param path 路由时使用的路径，去掉了contextPath和查询字符串
+     */
+    public String getServletPath(String path) {
+        return matchType == MatchType.PATH ? key : path;
+    }
+
+    /**
+     * @param path 路由时使用的路径，去掉了contextPath和查询字符串
+     */
+    public String getPathInfo(String path) {
+        if (matchType == MatchType.PATH && path.length() > key.length()) {
+            return path.substring(key.length());
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return urlPattern + " -> " + servletName;
+    }
+}
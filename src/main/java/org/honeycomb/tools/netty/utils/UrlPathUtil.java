@@ -0,0 +1,128 @@
+package org.honeycomb.tools.netty.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 请求路径的规范化，路由和分发器缓存都使用规范化后的路径
+ * <p>
+ * User: luluful
+ * Date: 10/18/26
+ */
+public final class UrlPathUtil {
+
+    private UrlPathUtil() {
+    }
+
+    /**
+     * 按UTF-8解码%XX（+不是空格），合并连续的/，去掉.和..路径段。
+     * 大部分请求路径不需要处理，扫描一遍后直接返回原字符串，不分配内存
+     * 编码的/和\（%2F、%5C）直接拒绝：先解码再去点号路径段时，/public%2F..%2Fadmin会变成/admin，
+     * 按原始路径做的访问控制就被绕过了
+     *
+     * @param path 以/开头、已经去掉查询字符串的路径
+     * @return 规范化后的路径；%编码不合法、包含编码的/或\、包含空字符或者..超出了根路径时返回null
+     */
+    public static String normalize(String path) {
+        if (!needsNormalization(path)) {
+            return path;
+        }
+        String decoded = path.indexOf('%') < 0 ? path : decode(path);
+        if (decoded == null || decoded.indexOf('\0') >= 0) {
+            return null;
+        }
+        return removeDotSegments(decoded);
+    }
+
+    /**
+     * @return 包含%、//、/.时需要处理，/.hidden这样的路径也会走一遍完整的处理，结果不变
+     */
+    private static boolean needsNormalization(String path) {
+        for (int i = 0, length = path.length(); i < length; i++) {
+            char c = path.charAt(i);
+            if (c == '%') {
+                return true;
+            }
+            if (c == '/' && i + 1 < length) {
+                char next = path.charAt(i + 1);
+                if (next == '/' || next == '.') {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static String decode(String path) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(path.length());
+        for (int i = 0, length = path.length(); i < length; i++) {
+            char c = path.charAt(i);
+            if (c == '%') {
+                if (i + 2 >= length) {
+                    return null;
+                }
+                int high = Character.digit(path.charAt(i + 1), 16);
+                int low = Character.digit(path.charAt(i + 2), 16);
+                int b = high << 4 | low;
+                if (high < 0 || low < 0 || b == '/' || b == '\\') {
+                    return null;
+                }
+                bytes.write(b);
+                i += 2;
+            } else if (c < 0x80) {
+                bytes.write(c);
+            } else {
+                byte[] encoded = String.valueOf(c).getBytes(StandardCharsets.UTF_8);
+                bytes.write(encoded, 0, encoded.length);
+            }
+        }
+        try {
+            return StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(bytes.toByteArray()))
+                    .toString();
+        } catch (CharacterCodingException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 与RFC 3986的remove_dot_segments相同，/a/b/..的结果是/a/
+     */
+    private static String removeDotSegments(String path) {
+        List<String> segments = new ArrayList<>();
+        boolean trailingSlash = false;
+        int start = 1;
+        while (start <= path.length()) {
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = path.length();
+            }
+            String segment = path.substring(start, end);
+            trailingSlash = end < path.length() || segment.isEmpty() || ".".equals(segment) || "..".equals(segment);
+            if ("..".equals(segment)) {
+                if (segments.isEmpty()) {
+                    return null;
+                }
+                segments.remove(segments.size() - 1);
+            } else if (!segment.isEmpty() && !".".equals(segment)) {
+                segments.add(segment);
+            }
+            start = end + 1;
+        }
+        StringBuilder normalized = new StringBuilder(path.length());
+        for (String segment : segments) {
+            normalized.append('/').append(segment);
+        }
+        if (segments.isEmpty() || trailingSlash) {
+            normalized.append('/');
+        }
+        return normalized.toString();
+    }
+}
@@ -0,0 +1,194 @@
+package org.honeycomb.tools.netty.utils;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 编译好的Servlet路由表，不可变，可以被多个线程同时使用
+ * <p>
+ * 精确匹配和路径匹配放在按路径段组织的trie里，每个节点的子节点是开放寻址的哈希表，
+ * 直接用请求路径的字符区间计算哈希和比较，查找过程不截取子串。
+ * 沿路径向下走一遍即可得到精确匹配和最长的路径匹配，找不到时再按扩展名匹配，最后是默认Servlet，
+ * 优先级与Servlet规范一致
+ * <p>
+ * User: luluful
+ * Date: 10/18/26
+ */
+public final class UrlPatternRouter {
+    private final Node root;
+    private final RegionMap<ServletRoute> extensions;
+    private final ServletRoute defaultRoute;
+
+    public UrlPatternRouter(Collection<ServletRoute> routes) {
+        BuildNode rootBuilder = new BuildNode();
+        Map<String, ServletRoute> extensionRoutes = new HashMap<>();
+        ServletRoute defaultRoute = null;
+        for (ServletRoute route : routes) {
+            switch (route.getMatchType()) {
+                case EXACT:
+                    rootBuilder.descend(route.getKey()).exact = route;
+                    break;
+                case PATH:
+                    rootBuilder.descend(route.getKey()).prefix = route;
+                    break;
+                case EXTENSION:
+                    extensionRoutes.put(route.getKey(), route);
+                    break;
+                default:
+                    defaultRoute = route;
+            }
+        }
+        this.root = rootBuilder.build();
+        this.extensions = new RegionMap<>(extensionRoutes);
+        this.defaultRoute = defaultRoute;
+    }
+
+    /**
+     * @param path 以/开头的请求路径，去掉了contextPath和查询字符串
+     * @return 匹配的路由，没有匹配且没有默认Servlet时为null
+     */
+    public ServletRoute route(String path) {
+        int length = path.length();
+        Node node = root;
+        ServletRoute longestPrefix = root.prefix;
+        int start = 1;
+        while (node.children != null) {
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = length;
+            }
+            Node child = node.children.get(path, start, end);
+            if (child == null) {
+                break;
+            }
+            node = child;
+            if (node.prefix != null) {
+                longestPrefix = node.prefix;
+            }
+            if (end == length) {
+                if (node.exact != null) {
+                    return node.exact;
+                }
+                break;
+            }
+            start = end + 1;
+        }
+        if (longestPrefix != null) {
+            return longestPrefix;
+        }
+        int lastSlash = path.lastIndexOf('/');
+        int dot = path.lastIndexOf('.');
+        if (dot > lastSlash) {
+            ServletRoute route = extensions.get(path, dot + 1, length);
+            if (route != null) {
+                return route;
+            }
+        }
+        return defaultRoute;
+    }
+
+    private static final class Node {
+        final ServletRoute exact;
+        final ServletRoute prefix;
+        final RegionMap<Node> children; //没有子节点时为null
+
+        Node(ServletRoute exact, ServletRoute prefix, RegionMap<Node> children) {
+            this.exact = exact;
+            this.prefix = prefix;
+            this.children = children;
+        }
+    }
+
+    /**
+     * 构建时使用的可变节点
+     */
+    private static final class BuildNode {
+        ServletRoute exact;
+        ServletRoute prefix;
+        final Map<String, BuildNode> children = new HashMap<>();
+
+        /**
+         * @param path 以/开头的路径，空字符串表示根节点；/a/b依次经过a、b两段，/a/的最后一段是空字符串
+         */
+        BuildNode descend(String path) {
+            BuildNode node = this;
+            if (path.isEmpty()) {
+                return node;
+            }
+            int start = 1;
+            while (true) {
+                int end = path.indexOf('/', start);
+                String segment = path.substring(start, end < 0 ? path.length() : end);
+                node = node.children.computeIfAbsent(segment, k -> new BuildNode());
+                if (end < 0) {
+                    return node;
+                }
+                start = end + 1;
+            }
+        }
+
+        Node build() {
+            if (children.isEmpty()) {
+                return new Node(exact, prefix, null);
+            }
+            Map<String, Node> built = new HashMap<>();
+            for (Map.Entry<String, BuildNode> entry : children.entrySet()) {
+                built.put(entry.getKey(), entry.getValue().build());
+            }
+            return new Node(exact, prefix, new RegionMap<>(built));
+        }
+    }
+
+    /**
+     * 字符串为key的开放寻址哈希表，可以直接用另一个字符串的一个区间查找
+     */
+    private static final class RegionMap<V> {
+        private final String[] keys;
+        private final Object[] values;
+        private final int mask;
+
+        RegionMap(Map<String, V> entries) {
+            int capacity = 2;
+            while (capacity < entries.size() * 2) {
+                capacity <<= 1;
+            }
+            this.keys = new String[capacity];
+            this.values = new Object[capacity];
+            this.mask = capacity - 1;
+            for (Map.Entry<String, V> entry : entries.entrySet()) {
+                int index = spread(entry.getKey().hashCode()) & mask;
+                while (keys[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = entry.getKey();
+                values[index] = entry.getValue();
+            }
+        }
+
+        /**
+         * 哈希算法与String.hashCode相同
+         */
+        @SuppressWarnings("unchecked")
+        V get(String s, int start, int end) {
+            int hash = 0;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + s.charAt(i);
+            }
+            int length = end - start;
+            int index = spread(hash) & mask;
+            String key;
+            while ((key = keys[index]) != null) {
+                if (key.length() == length && key.regionMatches(0, s, start, length)) {
+                    return (V) values[index];
+                }
+                index = (index + 1) & mask;
+            }
+            return null;
+        }
+
+        private static int spread(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package org.honeycomb.tools.netty.core;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * User: luluful
+ * Date: 10/18/26
+ */
+public class AdaptiveConcurrencyLimiterTest {
+
+    @Test
+    public void rejectsAboveLimitUntilReleased() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 10, 1.5, 0.2);
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        assertEquals(1, limiter.getRejectedRequests());
+        limiter.release(System.nanoTime(), false);
+        assertTrue(limiter.tryAcquire());
+        assertEquals(2, limiter.getInFlight());
+    }
+
+    @Test
+    public void growsWhenLatencyIsStableAndShrinksWhenItRises() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 100, 1.5, 1.0);
+        runWindow(limiter, 10, 10);
+        int grown = limiter.getLimit();
+        assertTrue("limit should grow: " + grown, grown > 10); //10 + sqrt(10)
+
+        runWindow(limiter, grown, 100); //耗时升到基准的10倍，梯度取下限0.5
+        assertTrue("limit should shrink: " + limiter.getLimit(), limiter.getLimit() < grown);
+    }
+
+    @Test
+    public void staysWithinBounds() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(7, 6, 8, 1.5, 1.0);
+        for (int i = 0; i < 3; i++) {
+            runWindow(limiter, limiter.getLimit(), 10);
+        }
+        assertEquals(8, limiter.getLimit());
+        for (int i = 0; i < 3; i++) {
+            runWindow(limiter, limiter.getLimit(), 1000);
+        }
+        assertEquals(6, limiter.getLimit());
+    }
+
+    @Test
+    public void ignoresFailedRequestsForLatency() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 100, 1.5, 1.0);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limiter.tryAcquire());
+        }
+        Thread.sleep(110);
+        for (int i = 0; i < 10; i++) {
+            limiter.release(System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(10), false);
+        }
+        assertEquals(10, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    /**
+     * 占满concurrency个名额，等待一个统计窗口后以rttMillis的耗时全部释放，每个窗口至少10个样本
+     */
+    private static void runWindow(AdaptiveConcurrencyLimiter limiter, int concurrency, long rttMillis) throws InterruptedException {
+        int samples = Math.max(10, concurrency);
+        for (int i = 0; i < samples; i++) {
+            assertTrue(limiter.tryAcquire() || i >= concurrency);
+        }
+        Thread.sleep(110);
+        int acquired = limiter.getInFlight();
+        for (int i = 0; i < samples; i++) {
+            if (i < acquired) {
+                limiter.release(System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(rttMillis), true);
+            }
+        }
+    }
+}
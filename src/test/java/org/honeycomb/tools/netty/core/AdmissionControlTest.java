@@ -0,0 +1,112 @@
+package org.honeycomb.tools.netty.core;
+
+import org.honeycomb.tools.netty.bootstrap.NettyServerProperties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 并发上限为1，任何一个没有释放的名额都会让后续请求返回503
+ * <p>
+ * User: luluful
+ * Date: 10/18/26
+ */
+public class AdmissionControlTest {
+    private NettyTestServer server;
+
+    @Before
+    public void setUp() {
+        NettyServerProperties properties = new NettyServerProperties();
+        NettyServerProperties.AdaptiveLimit limit = properties.getAdmission().getAdaptiveLimit();
+        limit.setEnabled(true);
+        limit.setInitialLimit(1);
+        limit.setMinLimit(1);
+        limit.setMaxLimit(1);
+        server = new NettyTestServer(properties)
+                .addServlet("small", new HttpServlet() {
+                    @Override
+                    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                        resp.getOutputStream().write("ok".getBytes());
+                    }
+                }, "/small")
+                .addServlet("large", new HttpServlet() {
+                    @Override
+                    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                        byte[] chunk = new byte[64 * 1024];
+                        for (int i = 0; i < 256; i++) {
+                            resp.getOutputStream().write(chunk);
+                        }
+                    }
+                }, "/large")
+                .addServlet("async", new HttpServlet() {
+                    @Override
+                    protected void doGet(HttpServletRequest req, HttpServletResponse resp) {
+                        req.startAsync(); //一直不调用complete
+                    }
+                }, "/async")
+                .start();
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void releasesPermitAfterEachResponse() throws Exception {
+        try (HttpTestClient client = server.connect()) {
+            for (int i = 0; i < 5; i++) {
+                assertEquals(200, client.get("/small").getStatus());
+            }
+        }
+        awaitNoRequestsInFlight();
+    }
+
+    @Test
+    public void releasesPermitWhenClientDisconnectsMidResponse() throws Exception {
+        try (HttpTestClient client = server.connect()) {
+            client.send("GET /large HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            client.getSocket().getInputStream().read(); //响应已经开始写出
+        }
+        awaitNoRequestsInFlight();
+        try (HttpTestClient client = server.connect()) {
+            assertEquals(200, client.get("/small").getStatus());
+        }
+    }
+
+    @Test
+    public void releasesPermitWhenAsyncRequestIsAbandoned() throws Exception {
+        try (HttpTestClient client = server.connect()) {
+            client.send("GET /async HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (server.getContainer().getConcurrencyLimiter().getInFlight() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            try (HttpTestClient other = server.connect()) {
+                assertEquals(503, other.get("/small").getStatus()); //名额被异步请求占用
+            }
+        }
+        awaitNoRequestsInFlight();
+        try (HttpTestClient client = server.connect()) {
+            assertEquals(200, client.get("/small").getStatus());
+        }
+    }
+
+    private void awaitNoRequestsInFlight() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = server.getContainer().getConcurrencyLimiter();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while ((limiter.getInFlight() > 0 || server.getContainer().getInFlightRequests() > 0) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals("Concurrency permit leaked", 0, limiter.getInFlight());
+        assertEquals(0, server.getContainer().getInFlightRequests());
+    }
+}
@@ -0,0 +1,78 @@
+package org.honeycomb.tools.netty.core;
+
+import io.netty.channel.Channel;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.honeycomb.tools.netty.bootstrap.NettyServerProperties;
+import org.honeycomb.tools.netty.executor.ServletExecutionStrategy;
+import org.honeycomb.tools.netty.request.InboundFlowControl;
+import org.honeycomb.tools.netty.resource.ResourceCache;
+
+import javax.servlet.Servlet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 不经过网络的Servlet管道：ResponseSequencer、ServletContentHandler、RequestDispatcherHandler，
+ * 没有HTTP编解码器，直接写入HttpRequest/HttpContent，读出HttpResponse/HttpContent
+ * <p>
+ * Servlet在传入的Executor上执行，传入Runnable::run时在写入请求的线程上同步执行
+ * <p>
+ * User: luluful
+ * Date: 10/18/26
+ */
+public class EmbeddedServletChannel {
+    private final NettyContext context;
+    private final NettyServerProperties properties = new NettyServerProperties();
+    private final ConnectionTracker connectionTracker = new ConnectionTracker(0, 0);
+
+    public EmbeddedServletChannel() {
+        this.context = new NettyContext("", getClass().getClassLoader(), "Netty@Test",
+                new ResourceCache(100, 1024 * 1024, 64 * 1024, false), properties.getDispatcherCacheSize());
+    }
+
+    public EmbeddedServletChannel addServlet(String name, Servlet servlet, String... urlPatterns) {
+        context.addServlet(name, servlet).addMapping(urlPatterns);
+        return this;
+    }
+
+    public NettyContext getContext() {
+        return context;
+    }
+
+    public ConnectionTracker getConnectionTracker() {
+        return connectionTracker;
+    }
+
+    /**
+     * 第一次调用时初始化Context，之后不能再通过addServlet增加Servlet
+     */
+    public EmbeddedChannel open(Executor servletExecutor) {
+        context.setInitialised(true);
+        AdmissionControl admissionControl = new AdmissionControl(connectionTracker, 0, null, null, null);
+        InboundFlowControl flowControl = new InboundFlowControl(properties.getReadBufferLowWaterMark(),
+                properties.getReadBufferHighWaterMark());
+        ServletExecutionStrategy strategy = new ServletExecutionStrategy() {
+            @Override
+            public String getName() {
+                return "embedded";
+            }
+
+            @Override
+            public Executor executor(Channel channel) {
+                return servletExecutor;
+            }
+
+            @Override
+            public void shutdown() {
+            }
+
+            @Override
+            public boolean awaitTermination(long timeout, TimeUnit unit) {
+                return true;
+            }
+        };
+        return new EmbeddedChannel(new ResponseSequencer(),
+                new ServletContentHandler(context, strategy, connectionTracker, flowControl, admissionControl, properties),
+                new RequestDispatcherHandler(context, strategy));
+    }
+}
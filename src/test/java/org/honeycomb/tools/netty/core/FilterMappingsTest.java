@@ -0,0 +1,164 @@
+package org.honeycomb.tools.netty.core;
+
+import org.honeycomb.tools.netty.registration.NettyFilterRegistration;
+import org.honeycomb.tools.netty.resource.ResourceCache;
+import org.junit.Test;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import java.util.EnumSet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * User: luluful
+ * Date: 10/18/26
+ */
+public class FilterMappingsTest {
+    private static final EnumSet<DispatcherType> REQUEST = EnumSet.of(DispatcherType.REQUEST);
+
+    private final NettyContext context = new NettyContext("", getClass().getClassLoader(), "Netty@Test",
+            new ResourceCache(100, 1024 * 1024, 64 * 1024, false), 0);
+    private final FilterMappings mappings = new FilterMappings();
+
+    private static final class NamedFilter implements Filter {
+        private final String name;
+
+        NamedFilter(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void init(FilterConfig filterConfig) {
+        }
+
+        @Override
+        public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) {
+        }
+
+        @Override
+        public void destroy() {
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private NettyFilterRegistration registration(String name) {
+        return new NettyFilterRegistration(context, name, NamedFilter.class.getName(), new NamedFilter(name));
+    }
+
+    private Filter[] filters(String servletName, String path) throws ServletException {
+        return mappings.getFilters(servletName, DispatcherType.REQUEST, path);
+    }
+
+    private static void assertFilters(Filter[] actual, NettyFilterRegistration... expected) throws ServletException {
+        Filter[] filters = new Filter[expected.length];
+        for (int i = 0; i < expected.length; i++) {
+            filters[i] = expected[i].getFilter();
+        }
+        assertArrayEquals(filters, actual);
+    }
+
+    @Test
+    public void urlPatternMappingsRunBeforeServletNameMappings() throws ServletException {
+        NettyFilterRegistration byName = registration("byName");
+        NettyFilterRegistration byUrl = registration("byUrl");
+        mappings.addServletNameMapping(byName, REQUEST, false, "dispatcher");
+        mappings.addUrlPatternMapping(byUrl, REQUEST, false, "/*");
+        assertFilters(filters("dispatcher", "/a"), byUrl, byName);
+        assertFilters(filters("other", "/a"), byUrl);
+    }
+
+    @Test
+    public void isMatchAfterRunsAfterDeclaredMappingsOfTheSameKind() throws ServletException {
+        NettyFilterRegistration urlAfter = registration("urlAfter");
+        NettyFilterRegistration url = registration("url");
+        NettyFilterRegistration nameAfter = registration("nameAfter");
+        NettyFilterRegistration name = registration("name");
+        mappings.addUrlPatternMapping(urlAfter, REQUEST, true, "/*");
+        mappings.addServletNameMapping(nameAfter, REQUEST, true, "dispatcher");
+        mappings.addUrlPatternMapping(url, REQUEST, false, "/api/*");
+        mappings.addServletNameMapping(name, REQUEST, false, "*");
+        assertFilters(filters("dispatcher", "/api/users"), url, urlAfter, name, nameAfter);
+        assertFilters(filters("dispatcher", "/index.html"), urlAfter, name, nameAfter);
+    }
+
+    @Test
+    public void filterMappedTwiceRunsOnce() throws ServletException {
+        NettyFilterRegistration twice = registration("twice");
+        NettyFilterRegistration other = registration("other");
+        mappings.addUrlPatternMapping(twice, REQUEST, false, "/api/*");
+        mappings.addUrlPatternMapping(other, REQUEST, false, "/*");
+        mappings.addUrlPatternMapping(twice, REQUEST, false, "*.json");
+        mappings.addServletNameMapping(twice, REQUEST, false, "dispatcher");
+        assertFilters(filters("dispatcher", "/api/users.json"), twice, other);
+        assertFilters(filters("dispatcher", "/index.html"), other, twice); //只通过servlet-name匹配，排在url-pattern之后
+        assertFilters(filters("static", "/index.html"), other);
+    }
+
+    @Test
+    public void mappingsApplyOnlyToTheirDispatcherTypes() throws ServletException {
+        NettyFilterRegistration requestOnly = registration("requestOnly");
+        NettyFilterRegistration forwardOnly = registration("forwardOnly");
+        NettyFilterRegistration requestAndAsync = registration("requestAndAsync");
+        mappings.addUrlPatternMapping(requestOnly, null, false, "/*"); //未指定时只对REQUEST生效
+        mappings.addUrlPatternMapping(forwardOnly, EnumSet.of(DispatcherType.FORWARD), false, "/*");
+        mappings.addUrlPatternMapping(requestAndAsync, EnumSet.of(DispatcherType.REQUEST, DispatcherType.ASYNC), false, "/*");
+        assertFilters(mappings.getFilters("s", DispatcherType.REQUEST, "/a"), requestOnly, requestAndAsync);
+        assertFilters(mappings.getFilters("s", DispatcherType.FORWARD, "/a"), forwardOnly);
+        assertFilters(mappings.getFilters("s", DispatcherType.ASYNC, "/a"), requestAndAsync);
+        assertFilters(mappings.getFilters("s", DispatcherType.ERROR, "/a"));
+    }
+
+    @Test
+    public void pathsWithTheSameMatchesShareOneArray() throws ServletException {
+        mappings.addUrlPatternMapping(registration("api"), REQUEST, false, "/api/*");
+        mappings.addUrlPatternMapping(registration("json"), REQUEST, false, "*.json");
+        Filter[] users = filters("s", "/api/users");
+        assertSame(users, filters("s", "/api/orders"));
+        assertNotSame(users, filters("s", "/api/users.json"));
+        assertSame(filters("s", "/a.json"), filters("s", "/b/c.json"));
+    }
+
+    @Test
+    public void pathPrefixPatternMatchesWholeSegmentsOnly() {
+        assertTrue(FilterMappings.matches("/foo/*", "/foo"));
+        assertTrue(FilterMappings.matches("/foo/*", "/foo/"));
+        assertTrue(FilterMappings.matches("/foo/*", "/foo/bar/baz"));
+        assertFalse(FilterMappings.matches("/foo/*", "/foobar"));
+        assertFalse(FilterMappings.matches("/foo/*", "/fo"));
+        assertTrue(FilterMappings.matches("/*", "/"));
+        assertTrue(FilterMappings.matches("/*", "/anything"));
+    }
+
+    @Test
+    public void extensionPatternLooksAtTheLastSegmentOnly() {
+        assertTrue(FilterMappings.matches("*.jsp", "/index.jsp"));
+        assertTrue(FilterMappings.matches("*.jsp", "/a.b/c.jsp"));
+        assertTrue(FilterMappings.matches("*.gz", "/dist/app.tar.gz"));
+        assertFalse(FilterMappings.matches("*.jsp", "/a.jsp/c"));
+        assertFalse(FilterMappings.matches("*.jsp", "/a.jsp/"));
+        assertFalse(FilterMappings.matches("*.jsp", "/indexjsp"));
+        assertFalse(FilterMappings.matches("*.jsp", "/index.jspx"));
+        assertFalse(FilterMappings.matches("*.jsp", "jsp"));
+    }
+
+    @Test
+    public void otherPatternsMatchExactly() {
+        assertTrue(FilterMappings.matches("/login", "/login"));
+        assertFalse(FilterMappings.matches("/login", "/login/"));
+        assertFalse(FilterMappings.matches("/login", "/login/x"));
+    }
+}
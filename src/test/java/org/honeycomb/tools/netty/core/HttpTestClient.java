@@ -0,0 +1,159 @@
+package org.honeycomb.tools.netty.core;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 直接读写socket的HTTP/1.1客户端，可以控制pipelining和读取速度
+ * <p>
+ * User: luluful
+ * Date: 10/18/26
+ */
+public class HttpTestClient implements AutoCloseable {
+    private final Socket socket;
+    private final InputStream in;
+    private final OutputStream out;
+
+    public HttpTestClient(int port) throws IOException {
+        this.socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        this.socket.setSoTimeout(30_000);
+        this.in = new BufferedInputStream(socket.getInputStream());
+        this.out = socket.getOutputStream();
+    }
+
+    public Socket getSocket() {
+        return socket;
+    }
+
+    public HttpTestClient send(String request) throws IOException {
+        return send(request.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    public HttpTestClient send(byte[] request) throws IOException {
+        out.write(request);
+        out.flush();
+        return this;
+    }
+
+    /**
+     * 发送GET请求并读取响应
+     */
+    public Response get(String uri) throws IOException {
+        send("GET " + uri + " HTTP/1.1\r\nHost: localhost\r\n\r\n");
+        return readResponse();
+    }
+
+    public Response readResponse() throws IOException {
+        String statusLine = readLine();
+        if (statusLine == null) {
+            throw new EOFException("Connection closed before the response");
+        }
+        int status = Integer.parseInt(statusLine.split(" ")[1]);
+        Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        String line;
+        while (!(line = readLine()).isEmpty()) {
+            int colon = line.indexOf(':');
+            headers.put(line.substring(0, colon).trim(), line.substring(colon + 1).trim());
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        if (status == 100) {
+            return new Response(status, headers, new byte[0]);
+        }
+        if ("chunked".equalsIgnoreCase(headers.get("Transfer-Encoding"))) {
+            int size;
+            while ((size = Integer.parseInt(readLine().trim(), 16)) > 0) {
+                copy(body, size);
+                readLine();
+            }
+            readLine();
+        } else if (headers.containsKey("Content-Length")) {
+            copy(body, Integer.parseInt(headers.get("Content-Length")));
+        } else {
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                body.write(buffer, 0, n);
+            }
+        }
+        return new Response(status, headers, body.toByteArray());
+    }
+
+    /**
+     * @return 连接是否已经被服务端关闭
+     */
+    public boolean isClosedByServer() throws IOException {
+        try {
+            return in.read() < 0;
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    private void copy(ByteArrayOutputStream body, int length) throws IOException {
+        byte[] buffer = new byte[8192];
+        while (length > 0) {
+            int n = in.read(buffer, 0, Math.min(buffer.length, length));
+            if (n < 0) {
+                throw new EOFException("Connection closed with " + length + " bytes of body remaining");
+            }
+            body.write(buffer, 0, n);
+            length -= n;
+        }
+    }
+
+    private String readLine() throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != '\n') {
+            if (c < 0) {
+                return line.length() == 0 ? null : line.toString();
+            }
+            if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        return line.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    public static final class Response {
+        private final int status;
+        private final Map<String, String> headers;
+        private final byte[] body;
+
+        Response(int status, Map<String, String> headers, byte[] body) {
+            this.status = status;
+            this.headers = headers;
+            this.body = body;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public String getHeader(String name) {
+            return headers.get(name);
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public String getBodyAsString() {
+            return new String(body, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package org.honeycomb.tools.netty.core;
+
+import org.honeycomb.tools.netty.bootstrap.NettyServerProperties;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Test;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * User: luluful
+ * Date: 10/18/26
+ */
+public class NettyContainerTest {
+    private NettyTestServer server;
+
+    @After
+    public void tearDown() {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    private static long sum(Map<String, Long> counts) {
+        return counts.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    /**
+     * 端口为0时，所有SO_REUSEPORT acceptor监听同一个系统分配的端口，连接分散到各个acceptor
+     */
+    @Test
+    public void reusePortAcceptorsShareTheEphemeralPort() throws Exception {
+        Assume.assumeTrue(NettyTransport.EPOLL.isAvailable());
+        NettyServerProperties properties = new NettyServerProperties();
+        properties.setAcceptors(3);
+        server = new NettyTestServer(properties).start();
+        int port = server.getPort();
+
+        Map<String, Long> counts = server.getContainer().getAcceptorConnectionCounts();
+        assertEquals(3, counts.size());
+        for (String acceptor : counts.keySet()) {
+            assertTrue(acceptor, acceptor.endsWith(":" + port));
+        }
+
+        int connections = 64;
+        for (int i = 0; i < connections; i++) {
+            new Socket(InetAddress.getLoopbackAddress(), port).close();
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (sum(counts = server.getContainer().getAcceptorConnectionCounts()) < connections
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(connections, sum(counts));
+        assertTrue(counts.toString(), counts.values().stream().filter(count -> count > 0).count() > 1);
+    }
+
+    /**
+     * 停机时先停止接收新连接并关闭空闲连接，正在处理的请求完成后带着Connection: close响应
+     */
+    @Test
+    public void stopDrainsInFlightRequestsBeforeClosing() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        NettyServerProperties properties = new NettyServerProperties();
+        properties.setShutdownTimeout(Duration.ofSeconds(10));
+        server = new NettyTestServer(properties)
+                .addServlet("slow", new HttpServlet() {
+                    @Override
+                    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                        started.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        resp.getOutputStream().write("done".getBytes(StandardCharsets.UTF_8));
+                    }
+                }, "/slow")
+                .addServlet("fast", new HttpServlet() {
+                    @Override
+                    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                        resp.getOutputStream().write("fast".getBytes(StandardCharsets.UTF_8));
+                    }
+                }, "/fast")
+                .start();
+        int port = server.getPort();
+        NettyContainer container = server.getContainer();
+
+        try (HttpTestClient idle = server.connect(); HttpTestClient busy = server.connect()) {
+            assertEquals(200, idle.get("/fast").getStatus());
+            busy.send("GET /slow HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            CompletableFuture<Void> stopped = CompletableFuture.runAsync(container::stop);
+            assertTrue("idle keep-alive connection is closed", idle.isClosedByServer());
+            try {
+                new Socket(InetAddress.getLoopbackAddress(), port).close();
+                fail("new connections are refused while draining");
+            } catch (ConnectException expected) {
+            }
+            assertFalse(stopped.isDone());
+            assertEquals(1, container.getInFlightRequests());
+
+            release.countDown();
+            HttpTestClient.Response response = busy.readResponse();
+            assertEquals(200, response.getStatus());
+            assertEquals("done", response.getBodyAsString());
+            assertEquals("close", response.getHeader("Connection"));
+            assertTrue(busy.isClosedByServer());
+            stopped.get(10, TimeUnit.SECONDS);
+        }
+        assertEquals(0, container.getInFlightRequests());
+        assertEquals(Long.valueOf(2), container.getClosedConnections().get(ConnectionCloseReason.SHUTDOWN));
+    }
+}
@@ -0,0 +1,196 @@
+package org.honeycomb.tools.netty.core;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.servlet.ServletRegistration;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * User: luluful
+ * Date: 10/18/26
+ */
+public class NettyContextTest {
+    private NettyTestServer server;
+
+    /**
+     * 响应内容为Servlet名称|ServletPath|PathInfo
+     */
+    private static HttpServlet echo(String name) {
+        return new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                resp.getOutputStream().write((name + "|" + req.getServletPath() + "|" + req.getPathInfo()).getBytes("UTF-8"));
+            }
+        };
+    }
+
+    @Before
+    public void setUp() {
+        server = new NettyTestServer()
+                .addServlet("api", echo("api"), "/api/*")
+                .addServlet("exact", echo("exact"), "/exact")
+                .start();
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    private String get(String uri) throws Exception {
+        try (HttpTestClient client = server.connect()) {
+            HttpTestClient.Response response = client.get(uri);
+            return response.getStatus() == 200 ? response.getBodyAsString() : String.valueOf(response.getStatus());
+        }
+    }
+
+    @Test
+    public void routesOnTheNormalizedPath() throws Exception {
+        assertEquals("api|/api|/users/1", get("/api/users/1"));
+        assertEquals("api|/api|/users/1", get("//api//users/./1"));
+        assertEquals("api|/api|/users/1", get("/api/groups/../users/1?x=/.."));
+        assertEquals("api|/api|/users/1", get("/%61pi/users/%31"));
+        assertEquals("exact|/exact|null", get("/api/../exact"));
+        assertEquals("400", get("/api/../../exact")); //路径不合法
+        assertEquals("400", get("/api/%zz"));
+        assertEquals("404", get("/missing"));
+    }
+
+    @Test
+    public void rejectsEncodedSlashes() throws Exception {
+        assertEquals("400", get("/api%2F..%2Fexact")); //不能解码成/api/../exact再路由到/exact
+        assertEquals("400", get("/api%5C..%5Cexact"));
+    }
+
+    @Test
+    public void servletMappingsCanChangeAtRuntime() throws Exception {
+        assertEquals("404", get("/late"));
+        server.getContext().addServlet("late", echo("late")).addMapping("/late");
+        assertEquals("late|/late|null", get("/late"));
+        server.getContext().removeServletMapping("/late");
+        assertEquals("404", get("/late"));
+
+        server.getContext().removeServletMapping("/exact");
+        assertEquals("api|/api|/users", get("/api/users")); //其他映射不受影响
+        assertEquals("404", get("/exact"));
+    }
+
+    @Test
+    public void registrationReflectsRemovedMappings() {
+        ServletRegistration registration = server.getContext().addServlet("late", echo("late"));
+        registration.addMapping("/late", "/later/*");
+        assertEquals(new HashSet<>(Arrays.asList("/late", "/later/*")), new HashSet<>(registration.getMappings()));
+
+        server.getContext().removeServletMapping("/late");
+        assertEquals(Collections.singletonList("/later/*"), new ArrayList<>(registration.getMappings()));
+    }
+
+    @Test
+    public void inFlightRequestKeepsTheMappingItWasRoutedWith() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        server.getContext().addServlet("slow", new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                entered.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                resp.getOutputStream().write(("slow|" + req.getServletPath()).getBytes("UTF-8"));
+            }
+        }).addMapping("/slow");
+        try (HttpTestClient inFlight = server.connect()) {
+            inFlight.send("GET /slow HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+            server.getContext().removeServletMapping("/slow");
+            server.getContext().addServlet("replacement", echo("replacement")).addMapping("/slow");
+            assertEquals("replacement|/slow|null", get("/slow"));
+
+            release.countDown();
+            assertEquals("slow|/slow", inFlight.readResponse().getBodyAsString());
+        }
+    }
+
+    /**
+     * 一个线程不断增删映射和注册Servlet，其他线程同时查找分发器，不受影响的路径始终路由到原来的Servlet
+     */
+    @Test
+    public void concurrentMappingChangesDoNotDisturbOtherRoutes() throws Exception {
+        NettyContext context = server.getContext();
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread writer = new Thread(() -> {
+            try {
+                for (int i = 0; running.get(); i++) {
+                    String name = "toggle" + i;
+                    context.addServlet(name, echo(name)).addMapping("/toggle/" + (i % 8));
+                    assertNotNull(context.getServlet(name));
+                    context.removeServletMapping("/toggle/" + (i % 8));
+                }
+            } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+            }
+        });
+        writer.start();
+        ExecutorService readers = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(readers.submit(() -> {
+                    for (int i = 0; i < 20000; i++) {
+                        NettyRequestDispatcher api = (NettyRequestDispatcher) context.getRequestDispatcher("/api/users/" + (i % 16));
+                        assertNotNull(api);
+                        assertEquals("/api/*", api.getRoute().getUrlPattern());
+                        NettyRequestDispatcher toggle = (NettyRequestDispatcher) context.getRequestDispatcher("/toggle/" + (i % 8));
+                        assertTrue(toggle == null || toggle.getRoute().getUrlPattern().equals("/toggle/" + (i % 8)));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            running.set(false);
+            writer.join(5000);
+            readers.shutdownNow();
+        }
+        assertNull(failure.get());
+    }
+
+    @Test
+    public void equivalentPathsShareOneCacheEntry() throws Exception {
+        NettyContext context = server.getContext();
+        get("/api/cached");
+        long hits = context.getDispatcherCacheHits();
+        get("/api//cached");
+        get("/api/./cached");
+        get("/api/%63ached");
+        assertEquals(hits + 3, context.getDispatcherCacheHits());
+    }
+}
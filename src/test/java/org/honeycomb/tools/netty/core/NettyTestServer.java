@@ -0,0 +1,73 @@
+package org.honeycomb.tools.netty.core;
+
+import org.honeycomb.tools.netty.bootstrap.NettyServerProperties;
+import org.honeycomb.tools.netty.resource.ResourceCache;
+
+import javax.servlet.Servlet;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+
+/**
+ * 测试用的容器，监听本机的随机端口
+ * <p>
+ * User: luluful
+ * Date: 10/18/26
+ */
+public class NettyTestServer implements AutoCloseable {
+    private final NettyServerProperties properties;
+    private final NettyContext context;
+    private NettyContainer container;
+
+    public NettyTestServer() {
+        this(new NettyServerProperties());
+    }
+
+    public NettyTestServer(NettyServerProperties properties) {
+        this.properties = properties;
+        this.context = new NettyContext("", getClass().getClassLoader(), "Netty@Test",
+                new ResourceCache(100, 1024 * 1024, 64 * 1024, false), properties.getDispatcherCacheSize());
+    }
+
+    public NettyContext getContext() {
+        return context;
+    }
+
+    public NettyServerProperties getProperties() {
+        return properties;
+    }
+
+    public NettyTestServer addServlet(String name, Servlet servlet, String... urlPatterns) {
+        context.addServlet(name, servlet).addMapping(urlPatterns);
+        return this;
+    }
+
+    public NettyTestServer start() {
+        return start(NettyListener.tcp(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), properties.getCodec()));
+    }
+
+    public NettyTestServer start(NettyListener listener) {
+        container = new NettyContainer(Collections.singletonList(listener), context, properties);
+        container.start();
+        return this;
+    }
+
+    public NettyContainer getContainer() {
+        return container;
+    }
+
+    public int getPort() {
+        return container.getPort();
+    }
+
+    public HttpTestClient connect() throws Exception {
+        return new HttpTestClient(getPort());
+    }
+
+    @Override
+    public void close() {
+        if (container != null) {
+            container.stop();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package org.honeycomb.tools.netty.core;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.epoll.EpollDomainSocketChannel;
+import io.netty.channel.unix.DomainSocketAddress;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpVersion;
+import org.honeycomb.tools.netty.bootstrap.NettyServerProperties;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * User: luluful
+ * Date: 10/18/26
+ */
+public class NettyTransportTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void selectsTheFirstAvailableTransport() {
+        NettyTransport expected = NettyTransport.EPOLL.isAvailable() ? NettyTransport.EPOLL
+                : NettyTransport.KQUEUE.isAvailable() ? NettyTransport.KQUEUE : NettyTransport.NIO;
+        assertEquals(expected, NettyTransport.select());
+        assertTrue(NettyTransport.NIO.isAvailable());
+    }
+
+    @Test
+    public void onlyNativeTransportsSupportDomainSockets() {
+        assertTrue(NettyTransport.EPOLL.supportsDomainSocket());
+        assertTrue(NettyTransport.KQUEUE.supportsDomainSocket());
+        assertFalse(NettyTransport.NIO.supportsDomainSocket());
+    }
+
+    /**
+     * 每个可用的传输层都能用它自己的线程组和channel类型接收TCP连接
+     */
+    @Test
+    public void everyAvailableTransportAcceptsTcpConnections() throws Exception {
+        for (NettyTransport transport : NettyTransport.values()) {
+            if (!transport.isAvailable()) {
+                continue;
+            }
+            EventLoopGroup group = transport.newEventLoopGroup(1, "netty-test-" + transport);
+            CountDownLatch accepted = new CountDownLatch(1);
+            try {
+                Channel server = new ServerBootstrap()
+                        .group(group)
+                        .channel(transport.serverSocketChannelClass())
+                        .childHandler(new ChannelInitializer<Channel>() {
+                            @Override
+                            protected void initChannel(Channel ch) {
+                                accepted.countDown();
+                            }
+                        })
+                        .bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0)).sync().channel();
+                assertEquals(transport.serverSocketChannelClass(), server.getClass());
+                new Socket(InetAddress.getLoopbackAddress(), ((InetSocketAddress) server.localAddress()).getPort()).close();
+                assertTrue(transport.toString(), accepted.await(5, TimeUnit.SECONDS));
+                server.close().sync();
+            } finally {
+                group.shutdownGracefully(0, 1, TimeUnit.SECONDS).sync();
+            }
+        }
+    }
+
+    @Test
+    public void domainSocketListenerServesServletRequests() throws Exception {
+        Assume.assumeTrue(NettyTransport.EPOLL.isAvailable());
+        File socket = new File(folder.getRoot(), "netty.sock");
+        NettyServerProperties properties = new NettyServerProperties();
+        try (NettyTestServer server = new NettyTestServer(properties)
+                .addServlet("hello", new HttpServlet() {
+                    @Override
+                    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                        resp.getOutputStream().write("hello".getBytes(StandardCharsets.UTF_8));
+                    }
+                }, "/hello")
+                .start(NettyListener.domainSocket(new DomainSocketAddress(socket), properties.getCodec()))) {
+            assertEquals(0, server.getPort()); //没有TCP监听
+
+            EventLoopGroup group = NettyTransport.EPOLL.newEventLoopGroup(1, "netty-test-client");
+            CompletableFuture<String> body = new CompletableFuture<>();
+            try {
+                Channel client = new Bootstrap()
+                        .group(group)
+                        .channel(EpollDomainSocketChannel.class)
+                        .handler(new ChannelInitializer<Channel>() {
+                            @Override
+                            protected void initChannel(Channel ch) {
+                                ch.pipeline().addLast(new HttpClientCodec(), new HttpObjectAggregator(1024),
+                                        new SimpleChannelInboundHandler<FullHttpResponse>() {
+                                            @Override
+                                            protected void channelRead0(ChannelHandlerContext ctx, FullHttpResponse msg) {
+                                                body.complete(msg.content().toString(StandardCharsets.UTF_8));
+                                            }
+                                        });
+                            }
+                        })
+                        .connect(new DomainSocketAddress(socket)).sync().channel();
+                DefaultFullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/hello");
+                request.headers().set(HttpHeaderNames.HOST, "localhost");
+                client.writeAndFlush(request);
+                assertEquals("hello", body.get(5, TimeUnit.SECONDS));
+                client.close().sync();
+            } finally {
+                group.shutdownGracefully(0, 1, TimeUnit.SECONDS).sync();
+            }
+        }
+    }
+}
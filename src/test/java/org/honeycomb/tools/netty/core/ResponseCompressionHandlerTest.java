@@ -0,0 +1,168 @@
+package org.honeycomb.tools.netty.core;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 只压缩text/html和application/json，小于64字节的响应和MSIE 6不压缩
+ * <p>
+ * User: luluful
+ * Date: 10/18/26
+ */
+public class ResponseCompressionHandlerTest {
+    private static final byte[] BODY = new String(new char[256]).replace('\0', 'a').getBytes(StandardCharsets.UTF_8);
+
+    private final EmbeddedChannel channel = new EmbeddedChannel(new ResponseCompressionHandler(6,
+            new HashSet<>(Arrays.asList("text/html", "application/json")),
+            Collections.singletonList(Pattern.compile(".*MSIE 6.*")), 64));
+
+    @After
+    public void tearDown() {
+        channel.finishAndReleaseAll();
+    }
+
+    private void request(String acceptEncoding, String userAgent) {
+        DefaultFullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/", Unpooled.EMPTY_BUFFER);
+        if (acceptEncoding != null) {
+            request.headers().set(HttpHeaderNames.ACCEPT_ENCODING, acceptEncoding);
+        }
+        if (userAgent != null) {
+            request.headers().set(HttpHeaderNames.USER_AGENT, userAgent);
+        }
+        assertTrue(channel.writeInbound(request));
+        ReferenceCountUtil.release(channel.readInbound());
+    }
+
+    private static FullHttpResponse response(String contentType, byte[] body) {
+        FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK, Unpooled.wrappedBuffer(body));
+        response.headers().set(HttpHeaderNames.CONTENT_TYPE, contentType);
+        HttpUtil.setContentLength(response, body.length);
+        return response;
+    }
+
+    /**
+     * @return 写出的响应头，响应体读入body
+     */
+    private HttpResponse write(HttpResponse response, ByteArrayOutputStream body) {
+        assertTrue(channel.writeOutbound(response));
+        HttpResponse head = null;
+        Object message;
+        while ((message = channel.readOutbound()) != null) {
+            if (message instanceof HttpResponse) {
+                head = (HttpResponse) message;
+            }
+            if (message instanceof HttpContent) {
+                ByteBuf content = ((HttpContent) message).content();
+                byte[] bytes = new byte[content.readableBytes()];
+                content.readBytes(bytes);
+                body.write(bytes, 0, bytes.length);
+            }
+            ReferenceCountUtil.release(message);
+        }
+        return head;
+    }
+
+    private static byte[] gunzip(byte[] compressed) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            byte[] buffer = new byte[1024];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private HttpResponse exchange(String acceptEncoding, String userAgent, HttpResponse response, ByteArrayOutputStream body) {
+        request(acceptEncoding, userAgent);
+        return write(response, body);
+    }
+
+    @Test
+    public void compressesAcceptedTypeAboveMinSize() throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        HttpResponse head = exchange("gzip, deflate", null, response("text/html; charset=UTF-8", BODY), body);
+        assertEquals("gzip", head.headers().get(HttpHeaderNames.CONTENT_ENCODING));
+        assertEquals(HttpHeaderNames.ACCEPT_ENCODING.toString(), head.headers().get(HttpHeaderNames.VARY));
+        assertArrayEquals(BODY, gunzip(body.toByteArray()));
+    }
+
+    @Test
+    public void prefersGzipAndHonoursQualityValues() {
+        assertEquals("gzip", exchange("deflate;q=0.5, gzip", null, response("application/json", BODY), new ByteArrayOutputStream())
+                .headers().get(HttpHeaderNames.CONTENT_ENCODING));
+        assertEquals("deflate", exchange("gzip;q=0, deflate", null, response("application/json", BODY), new ByteArrayOutputStream())
+                .headers().get(HttpHeaderNames.CONTENT_ENCODING));
+    }
+
+    @Test
+    public void leavesResponsesUncompressedWhenNotNegotiated() {
+        assertUncompressed(exchange(null, null, response("text/html", BODY), new ByteArrayOutputStream()));
+        assertUncompressed(exchange("br", null, response("text/html", BODY), new ByteArrayOutputStream()));
+        assertUncompressed(exchange("gzip", null, response("image/png", BODY), new ByteArrayOutputStream()));
+        assertUncompressed(exchange("gzip", null, response("text/html", Arrays.copyOf(BODY, 63)), new ByteArrayOutputStream()));
+        assertUncompressed(exchange("gzip", "Mozilla/4.0 (compatible; MSIE 6.0; Windows NT 5.1)", response("text/html", BODY),
+                new ByteArrayOutputStream()));
+
+        FullHttpResponse encoded = response("text/html", BODY);
+        encoded.headers().set(HttpHeaderNames.CONTENT_ENCODING, "identity");
+        assertEquals("identity", exchange("gzip", null, encoded, new ByteArrayOutputStream()).headers().get(HttpHeaderNames.CONTENT_ENCODING));
+    }
+
+    /**
+     * 流水线请求的User-Agent和Accept-Encoding按请求顺序对应到各自的响应上
+     */
+    @Test
+    public void pipelinedRequestsAreNegotiatedIndependently() {
+        request("gzip", "Mozilla/4.0 (compatible; MSIE 6.0; Windows NT 5.1)");
+        request("gzip", "curl/7.58.0");
+        request(null, "curl/7.58.0");
+        assertUncompressed(write(response("text/html", BODY), new ByteArrayOutputStream()));
+        assertEquals("gzip", write(response("text/html", BODY), new ByteArrayOutputStream()).headers().get(HttpHeaderNames.CONTENT_ENCODING));
+        assertUncompressed(write(response("text/html", BODY), new ByteArrayOutputStream()));
+    }
+
+    @Test
+    public void interimResponseDoesNotConsumeTheNegotiation() {
+        request("gzip", null);
+        assertUncompressed(write(new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.CONTINUE), new ByteArrayOutputStream()));
+        assertEquals("gzip", write(response("text/html", BODY), new ByteArrayOutputStream()).headers().get(HttpHeaderNames.CONTENT_ENCODING));
+    }
+
+    private static void assertUncompressed(HttpResponse response) {
+        assertNull(response.headers().get(HttpHeaderNames.CONTENT_ENCODING));
+        assertFalse(response.headers().contains(HttpHeaderNames.VARY));
+    }
+}
@@ -0,0 +1,151 @@
+package org.honeycomb.tools.netty.core;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.Test;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * User: luluful
+ * Date: 10/18/26
+ */
+public class ResponseSequencerTest {
+
+    private static FullHttpResponse fullResponse(String body) {
+        return new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+                Unpooled.copiedBuffer(body, StandardCharsets.UTF_8));
+    }
+
+    private static String body(Object message) {
+        return ((ByteBufHolder) message).content().toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void holdsLaterResponsesUntilEarlierOnesEnd() {
+        EmbeddedChannel channel = new EmbeddedChannel(new ResponseSequencer());
+        ChannelFuture second = channel.writeAndFlush(new SequencedMessage(1, fullResponse("second")));
+        assertNull(channel.readOutbound());
+        assertFalse(second.isDone());
+
+        HttpResponse head = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+        channel.writeAndFlush(new SequencedMessage(0, head));
+        channel.writeAndFlush(new SequencedMessage(0, new DefaultHttpContent(Unpooled.copiedBuffer("first", StandardCharsets.UTF_8))));
+        assertFalse(second.isDone());
+        channel.writeAndFlush(new SequencedMessage(0, LastHttpContent.EMPTY_LAST_CONTENT));
+
+        assertSame(head, channel.readOutbound());
+        Object content = channel.readOutbound();
+        assertEquals("first", body(content));
+        ReferenceCountUtil.release(content);
+        assertSame(LastHttpContent.EMPTY_LAST_CONTENT, channel.readOutbound());
+        FullHttpResponse response = channel.readOutbound();
+        assertEquals("second", body(response));
+        response.release();
+        assertTrue(second.isSuccess());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void interimResponseDoesNotEndTheSequence() {
+        EmbeddedChannel channel = new EmbeddedChannel(new ResponseSequencer());
+        channel.writeAndFlush(new SequencedMessage(1, fullResponse("second")));
+        FullHttpResponse interim = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.CONTINUE);
+        channel.writeAndFlush(new SequencedMessage(0, interim));
+        assertSame(interim, channel.readOutbound());
+        assertNull(channel.readOutbound());
+
+        channel.writeAndFlush(new SequencedMessage(0, fullResponse("first")));
+        FullHttpResponse first = channel.readOutbound();
+        FullHttpResponse second = channel.readOutbound();
+        assertEquals("first", body(first));
+        assertEquals("second", body(second));
+        first.release();
+        second.release();
+    }
+
+    @Test
+    public void releasesHeldResponsesWhenTheChannelCloses() {
+        EmbeddedChannel channel = new EmbeddedChannel(new ResponseSequencer());
+        FullHttpResponse held = fullResponse("held");
+        ChannelFuture future = channel.writeAndFlush(new SequencedMessage(2, held));
+        channel.close();
+        assertEquals(0, held.refCnt());
+        assertTrue(future.cause() instanceof ClosedChannelException);
+    }
+
+    @Test
+    public void releasingTheWrapperReleasesTheMessage() {
+        ByteBuf content = Unpooled.buffer(4).writeInt(1);
+        SequencedMessage message = new SequencedMessage(0, new DefaultLastHttpContent(content));
+        assertEquals(1, message.refCnt());
+        message.retain();
+        message.release();
+        assertEquals(1, content.refCnt()); //包装对象有自己的引用计数
+        message.release();
+        assertEquals(0, content.refCnt());
+    }
+
+    /**
+     * 同一连接上的两个请求，后到的请求先在执行器上完成，响应仍然按请求顺序写出
+     */
+    @Test
+    public void pipelinedResponsesAreWrittenInRequestOrder() throws Exception {
+        Deque<Runnable> tasks = new ArrayDeque<>();
+        EmbeddedServletChannel servletChannel = new EmbeddedServletChannel();
+        EmbeddedChannel channel = servletChannel
+                .addServlet("echo", new HttpServlet() {
+                    @Override
+                    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                        resp.getOutputStream().write(req.getRequestURI().getBytes(StandardCharsets.UTF_8));
+                    }
+                }, "/")
+                .open(tasks::add);
+        channel.writeInbound(new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/first", Unpooled.EMPTY_BUFFER));
+        channel.writeInbound(new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/second", Unpooled.EMPTY_BUFFER));
+        assertEquals(2, tasks.size());
+
+        tasks.pollLast().run(); //第二个请求先完成
+        channel.runPendingTasks();
+        assertNull(channel.readOutbound());
+
+        tasks.pollFirst().run();
+        channel.runPendingTasks();
+        FullHttpResponse first = channel.readOutbound();
+        FullHttpResponse second = channel.readOutbound();
+        assertEquals("/first", body(first));
+        assertEquals("/second", body(second));
+        first.release();
+        second.release();
+        assertNull(channel.readOutbound());
+        assertEquals(0, servletChannel.getConnectionTracker().getInFlightRequests());
+    }
+}
@@ -0,0 +1,128 @@
+package org.honeycomb.tools.netty.core;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.ReferenceCountUtil;
+import org.honeycomb.tools.netty.resource.StaticResourceResolver;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 非keep-alive的静态资源响应写完后关闭连接，关闭原因取决于写完时是否已经开始排空
+ * <p>
+ * User: luluful
+ * Date: 10/18/26
+ */
+public class StaticResourceHandlerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ConnectionTracker tracker = new ConnectionTracker(0, 0);
+    private final HeldWrites heldWrites = new HeldWrites();
+    private StaticResourceResolver resolver;
+    private EmbeddedChannel channel;
+
+    /**
+     * 暂存写出的消息，直到调用release，模拟客户端读得慢
+     */
+    private static final class HeldWrites extends ChannelOutboundHandlerAdapter {
+        private final List<Object> messages = new ArrayList<>();
+        private final List<ChannelPromise> promises = new ArrayList<>();
+        private ChannelHandlerContext ctx;
+
+        @Override
+        public void handlerAdded(ChannelHandlerContext ctx) {
+            this.ctx = ctx;
+        }
+
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+            messages.add(msg);
+            promises.add(promise);
+        }
+
+        @Override
+        public void flush(ChannelHandlerContext ctx) {
+        }
+
+        void release() {
+            for (int i = 0; i < messages.size(); i++) {
+                ctx.write(messages.get(i), promises.get(i));
+            }
+            messages.clear();
+            promises.clear();
+            ctx.flush();
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        File root = folder.newFolder("static");
+        Files.write(new File(root, "app.js").toPath(), "console.log('static')".getBytes(StandardCharsets.UTF_8));
+        resolver = new StaticResourceResolver(getClass().getClassLoader(),
+                Collections.singletonList("file:" + root.getPath()), 1024, 1024 * 1024);
+        channel = new EmbeddedChannel(heldWrites, new StaticResourceHandler(resolver, "", tracker, null, false));
+    }
+
+    @After
+    public void tearDown() {
+        channel.finishAndReleaseAll();
+        resolver.close();
+    }
+
+    private void requestWithConnectionClose() {
+        DefaultFullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/app.js", Unpooled.EMPTY_BUFFER);
+        request.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.CLOSE);
+        assertFalse(channel.writeInbound(request));
+    }
+
+    private void releaseOutbound() {
+        heldWrites.release();
+        channel.runPendingTasks();
+        Object message;
+        while ((message = channel.readOutbound()) != null) {
+            ReferenceCountUtil.release(message);
+        }
+    }
+
+    @Test
+    public void closesWithNotKeepAliveOutsideShutdown() {
+        requestWithConnectionClose();
+        releaseOutbound();
+        assertFalse(channel.isOpen());
+        assertEquals(ConnectionCloseReason.NOT_KEEP_ALIVE, ConnectionCloseReason.of(channel));
+    }
+
+    @Test
+    public void closeCountsAsShutdownWhenDrainingStartedDuringTheWrite() throws Exception {
+        requestWithConnectionClose();
+        assertTrue(channel.isOpen());
+        tracker.drain(0, TimeUnit.MILLISECONDS); //连接没有登记在tracker上，排空不会替它关闭
+        releaseOutbound();
+        assertFalse(channel.isOpen());
+        assertEquals(ConnectionCloseReason.SHUTDOWN, ConnectionCloseReason.of(channel));
+    }
+}
@@ -0,0 +1,121 @@
+package org.honeycomb.tools.netty.executor;
+
+import io.netty.channel.Channel;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 四种执行策略的吞吐量：每次操作在CONNECTIONS个连接上各提交REQUESTS_PER_CONNECTION个请求，等待全部完成
+ * <p>
+ * workload=cpu时每个请求只做计算，workload=blocking时每个请求阻塞50微秒，模拟Servlet中的数据库或RPC调用。
+ * 分数是每秒完成的操作数，乘以CONNECTIONS * REQUESTS_PER_CONNECTION得到每秒请求数。
+ * virtual需要JDK 21+，低版本JVM上main方法跳过它
+ * <p>
+ * 在IDE中运行main方法，或者mvn test-compile后用test classpath运行
+ * <p>
+ * User: luluful
+ * Date: 10/18/26
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExecutionStrategyBenchmark {
+    private static final int THREADS = 16;
+    private static final int CONNECTIONS = 64;
+    private static final int REQUESTS_PER_CONNECTION = 16;
+    private static final long CPU_TOKENS = 2000;
+    private static final long BLOCKING_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    @Param({"pinned", "thread-pool", "fork-join", "virtual"})
+    private String strategy;
+
+    @Param({"cpu", "blocking"})
+    private String workload;
+
+    private ServletExecutionStrategy executionStrategy;
+    private final Channel[] channels = new Channel[CONNECTIONS];
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        switch (strategy) {
+            case "thread-pool":
+                executionStrategy = new ThreadPoolExecutionStrategy(THREADS, THREADS, 60_000, CONNECTIONS * REQUESTS_PER_CONNECTION);
+                break;
+            case "fork-join":
+                executionStrategy = new ForkJoinExecutionStrategy(THREADS);
+                break;
+            case "virtual":
+                executionStrategy = new VirtualThreadExecutionStrategy();
+                break;
+            default:
+                executionStrategy = new PinnedExecutionStrategy(THREADS);
+        }
+        for (int i = 0; i < CONNECTIONS; i++) {
+            channels[i] = new EmbeddedChannel();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        executionStrategy.shutdown();
+        executionStrategy.awaitTermination(10, TimeUnit.SECONDS);
+        for (Channel channel : channels) {
+            channel.close();
+        }
+    }
+
+    private void handle() {
+        if ("blocking".equals(workload)) {
+            LockSupport.parkNanos(BLOCKING_NANOS);
+        } else {
+            Blackhole.consumeCPU(CPU_TOKENS);
+        }
+    }
+
+    @Benchmark
+    public void requests() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(CONNECTIONS * REQUESTS_PER_CONNECTION);
+        Runnable request = () -> {
+            handle();
+            done.countDown();
+        };
+        for (int i = 0; i < REQUESTS_PER_CONNECTION; i++) {
+            for (Channel channel : channels) {
+                executionStrategy.executor(channel).execute(request);
+            }
+        }
+        done.await();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        ChainedOptionsBuilder options = new OptionsBuilder().include(ExecutionStrategyBenchmark.class.getSimpleName());
+        if (!VirtualThreadExecutionStrategy.isSupported()) {
+            options.param("strategy", "pinned", "thread-pool", "fork-join");
+        }
+        new Runner(options.build()).run();
+    }
+}
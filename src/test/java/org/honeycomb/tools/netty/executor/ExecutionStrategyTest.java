@@ -0,0 +1,118 @@
+package org.honeycomb.tools.netty.executor;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.honeycomb.tools.netty.bootstrap.NettyServerProperties;
+import org.honeycomb.tools.netty.core.HttpTestClient;
+import org.honeycomb.tools.netty.core.NettyTestServer;
+import org.junit.Test;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * User: luluful
+ * Date: 10/18/26
+ */
+public class ExecutionStrategyTest {
+
+    @Test
+    public void saturatedThreadPoolRejectsWith503InsteadOfRunningOnIoThread() throws Exception {
+        NettyServerProperties properties = new NettyServerProperties();
+        properties.getExecutor().setStrategy(NettyServerProperties.Executor.Strategy.THREAD_POOL);
+        properties.getExecutor().setThreads(1);
+        properties.getExecutor().setQueueCapacity(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        List<String> threads = new CopyOnWriteArrayList<>();
+        try (NettyTestServer server = new NettyTestServer(properties)) {
+            server.addServlet("blocking", new HttpServlet() {
+                @Override
+                protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                    threads.add(Thread.currentThread().getName());
+                    started.countDown();
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    resp.getOutputStream().write("done".getBytes());
+                }
+            }, "/*").start();
+            try (HttpTestClient running = server.connect(); HttpTestClient queued = server.connect();
+                 HttpTestClient rejected = server.connect()) {
+                running.send("GET /a HTTP/1.1\r\nHost: localhost\r\n\r\n");
+                assertTrue(started.await(5, TimeUnit.SECONDS));
+                queued.send("GET /b HTTP/1.1\r\nHost: localhost\r\n\r\n");
+                Thread.sleep(200); //等待第二个请求进入队列
+                assertEquals(503, rejected.get("/c").getStatus());
+                release.countDown();
+                assertEquals(200, running.readResponse().getStatus());
+                assertEquals(200, queued.readResponse().getStatus());
+            }
+        }
+        assertEquals(2, threads.size());
+        for (String thread : threads) {
+            assertTrue("Servlet ran on " + thread, thread.startsWith("netty-servlet"));
+        }
+    }
+
+    @Test
+    public void pinnedStrategyKeepsConnectionOnOneExecutor() throws InterruptedException {
+        PinnedExecutionStrategy strategy = new PinnedExecutionStrategy(2);
+        try {
+            EmbeddedChannel first = new EmbeddedChannel();
+            EmbeddedChannel second = new EmbeddedChannel();
+            Executor executor = strategy.executor(first);
+            assertSame(executor, strategy.executor(first));
+            assertNotSame(executor, strategy.executor(second));
+        } finally {
+            strategy.shutdown();
+            strategy.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void serialExecutorRunsTasksInOrderWithoutOverlap() throws InterruptedException {
+        ForkJoinExecutionStrategy forkJoin = new ForkJoinExecutionStrategy(4);
+        try {
+            SerialExecutor executor = new SerialExecutor(forkJoin.executor(new EmbeddedChannel()));
+            List<Integer> order = new CopyOnWriteArrayList<>();
+            AtomicInteger running = new AtomicInteger();
+            AtomicBoolean overlapped = new AtomicBoolean();
+            CountDownLatch done = new CountDownLatch(100);
+            for (int i = 0; i < 100; i++) {
+                int n = i;
+                executor.execute(() -> {
+                    if (running.incrementAndGet() > 1) {
+                        overlapped.set(true);
+                    }
+                    order.add(n);
+                    running.decrementAndGet();
+                    done.countDown();
+                });
+            }
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertFalse(overlapped.get());
+            for (int i = 0; i < 100; i++) {
+                assertEquals(i, (int) order.get(i));
+            }
+        } finally {
+            forkJoin.shutdown();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package org.honeycomb.tools.netty.request;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.HttpContent;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Servlet线程等待请求体的延迟和CPU消耗：IO线程在delayMicros之后放入请求体，Servlet线程阻塞读取
+ * <p>
+ * blockingHandOff使用HttpRequestInputStream，spinPoll是原来的实现，每微秒poll一次队列并检查连接状态。
+ * 每次读取的延迟看Score，读线程消耗的CPU时间是cpuNanos / reads
+ * <p>
+ * 在IDE中运行main方法，或者mvn test-compile后用test classpath运行
+ * <p>
+ * User: luluful
+ * Date: 10/18/26
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HttpRequestInputStreamBenchmark {
+    private static final int CONTENT_SIZE = 1024;
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    @Param({"50", "1000"})
+    private int delayMicros;
+
+    private ScheduledExecutorService ioThread;
+    private EmbeddedChannel channel;
+    private InboundFlowControl flowControl;
+    private final byte[] buffer = new byte[CONTENT_SIZE];
+
+    /**
+     * 读线程消耗的CPU时间，按次数累加
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class ReaderCpu {
+        public long cpuNanos;
+        public long reads;
+
+        void add(long startCpuNanos) {
+            cpuNanos += THREADS.getCurrentThreadCpuTime() - startCpuNanos;
+            reads++;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        ioThread = Executors.newSingleThreadScheduledExecutor();
+        channel = new EmbeddedChannel();
+        flowControl = new InboundFlowControl(32 * 1024, 64 * 1024);
+    }
+
+    @TearDown
+    public void tearDown() {
+        ioThread.shutdownNow();
+        channel.finishAndReleaseAll();
+    }
+
+    private static HttpContent newContent() {
+        return new DefaultLastHttpContent(Unpooled.wrappedBuffer(new byte[CONTENT_SIZE]));
+    }
+
+    @Benchmark
+    public int blockingHandOff(ReaderCpu cpu) throws IOException {
+        long start = THREADS.getCurrentThreadCpuTime();
+        HttpRequestInputStream in = new HttpRequestInputStream(channel, Runnable::run, flowControl, 10, TimeUnit.SECONDS);
+        ioThread.schedule(() -> in.addContent(newContent()), delayMicros, TimeUnit.MICROSECONDS);
+        int total = 0;
+        int n;
+        while ((n = in.read(buffer)) >= 0) {
+            total += n;
+        }
+        in.close();
+        cpu.add(start);
+        return total;
+    }
+
+    @Benchmark
+    public int spinPoll(ReaderCpu cpu) throws IOException {
+        long start = THREADS.getCurrentThreadCpuTime();
+        BlockingQueue<HttpContent> queue = new LinkedBlockingQueue<>();
+        ioThread.schedule(() -> queue.offer(newContent()), delayMicros, TimeUnit.MICROSECONDS);
+        HttpContent content = null;
+        while (content == null) {
+            try {
+                content = queue.poll(1000, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException ignored) {
+            }
+            if (content == null && !channel.isActive()) {
+                throw new IOException("Channel is not active");
+            }
+        }
+        int total = content.content().readableBytes();
+        content.content().readBytes(buffer, 0, total);
+        content.release();
+        cpu.add(start);
+        return total;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(HttpRequestInputStreamBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,361 @@
+package org.honeycomb.tools.netty.request;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.HttpContent;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.servlet.ReadListener;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * User: luluful
+ * Date: 10/18/26
+ */
+public class HttpRequestInputStreamTest {
+    private EmbeddedChannel channel;
+    private Runnable beforeThrottleCheck; //在addContent判断高水位时执行一次，模拟Servlet线程在这个时间窗口里读数据
+
+    @Before
+    public void setUp() {
+        channel = new EmbeddedChannel();
+    }
+
+    private HttpRequestInputStream newStream(long readTimeoutMillis) {
+        InboundFlowControl flowControl = new InboundFlowControl(10, 100) {
+            @Override
+            int getHighWaterMark() {
+                Runnable hook = beforeThrottleCheck;
+                beforeThrottleCheck = null;
+                if (hook != null) {
+                    hook.run();
+                }
+                return super.getHighWaterMark();
+            }
+        };
+        return new HttpRequestInputStream(channel, Runnable::run, flowControl, readTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private static HttpContent content(int length) {
+        return new DefaultHttpContent(Unpooled.wrappedBuffer(new byte[length]));
+    }
+
+    @Test
+    public void pausesAboveHighWaterMarkAndResumesBelowLowWaterMark() throws IOException {
+        HttpRequestInputStream in = newStream(1000);
+        in.addContent(content(60));
+        assertTrue(channel.config().isAutoRead());
+        in.addContent(content(60));
+        assertFalse(channel.config().isAutoRead());
+
+        byte[] buffer = new byte[60];
+        assertEquals(60, in.read(buffer)); //剩60字节，仍高于低水位
+        channel.runPendingTasks();
+        assertFalse(channel.config().isAutoRead());
+        assertEquals(60, in.read(buffer)); //取出第二个HttpContent后队列为空
+        channel.runPendingTasks();
+        assertTrue(channel.config().isAutoRead());
+    }
+
+    @Test
+    public void resumesWhenQueueIsDrainedBeforeThrottling() throws IOException {
+        HttpRequestInputStream in = newStream(1000);
+        in.addContent(content(60));
+        byte[] buffer = new byte[200];
+        beforeThrottleCheck = () -> { //字节数已经超过高水位，但还没有设置throttled
+            try {
+                assertEquals(60, in.read(buffer));
+                assertEquals(60, in.read(buffer));
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+        };
+        in.addContent(content(60));
+        channel.runPendingTasks();
+        assertTrue("Reading was paused with an empty queue", channel.config().isAutoRead());
+    }
+
+    @Test
+    public void closeResumesReading() throws IOException {
+        HttpRequestInputStream in = newStream(1000);
+        in.addContent(content(200));
+        assertFalse(channel.config().isAutoRead());
+        in.close();
+        channel.runPendingTasks();
+        assertTrue(channel.config().isAutoRead());
+    }
+
+    @Test
+    public void blockingReadWakesUpWhenContentArrives() throws Exception {
+        HttpRequestInputStream in = newStream(5000);
+        ExecutorService reader = Executors.newSingleThreadExecutor();
+        try {
+            Future<byte[]> result = reader.submit(() -> {
+                byte[] buffer = new byte[3];
+                int n = 0;
+                while (n < 3) {
+                    n += in.read(buffer, n, 3 - n);
+                }
+                assertEquals(-1, in.read());
+                return buffer;
+            });
+            Thread.sleep(50);
+            in.addContent(new DefaultHttpContent(Unpooled.wrappedBuffer(new byte[]{1, 2})));
+            in.addContent(new DefaultLastHttpContent(Unpooled.wrappedBuffer(new byte[]{3})));
+            assertArrayEquals(new byte[]{1, 2, 3}, result.get(2, TimeUnit.SECONDS));
+        } finally {
+            reader.shutdownNow();
+        }
+    }
+
+    @Test
+    public void blockingReadTimesOut() throws IOException {
+        HttpRequestInputStream in = newStream(50);
+        long start = System.nanoTime();
+        try {
+            in.read();
+            fail();
+        } catch (SocketTimeoutException expected) {
+            assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        }
+    }
+
+    @Test
+    public void zeroReadTimeoutWaitsUntilContentArrives() throws Exception {
+        HttpRequestInputStream in = newStream(0); //0表示不限制，不能立即超时
+        ExecutorService reader = Executors.newSingleThreadExecutor();
+        try {
+            Future<Integer> result = reader.submit(() -> in.read());
+            Thread.sleep(100);
+            assertFalse(result.isDone());
+            in.addContent(new DefaultLastHttpContent(Unpooled.wrappedBuffer(new byte[]{7})));
+            assertEquals(7, (int) result.get(2, TimeUnit.SECONDS));
+        } finally {
+            reader.shutdownNow();
+        }
+    }
+
+    @Test
+    public void closeWakesUpBlockedReader() throws Exception {
+        HttpRequestInputStream in = newStream(5000);
+        ExecutorService reader = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> result = reader.submit(() -> in.read());
+            Thread.sleep(50);
+            in.close();
+            try {
+                result.get(2, TimeUnit.SECONDS);
+                fail();
+            } catch (java.util.concurrent.ExecutionException e) {
+                assertTrue(e.getCause() instanceof IOException || e.getCause() instanceof IllegalStateException);
+            }
+        } finally {
+            reader.shutdownNow();
+        }
+    }
+
+    private static ByteBuf bytes(int... values) {
+        ByteBuf buf = Unpooled.buffer(values.length);
+        for (int value : values) {
+            buf.writeByte(value);
+        }
+        return buf;
+    }
+
+    @Test
+    public void retainedContentSpansAllHttpContents() throws IOException {
+        HttpRequestInputStream in = newStream(1000);
+        in.addContent(new DefaultHttpContent(bytes(1, 2)));
+        in.addContent(new DefaultHttpContent(bytes(3)));
+        in.addContent(new DefaultLastHttpContent(bytes(4, 5, 6)));
+        ByteBuf body = in.readRetainedContent();
+        try {
+            assertArrayEquals(new byte[]{1, 2, 3, 4, 5, 6}, ByteBufUtil.getBytes(body));
+            assertEquals(-1, in.read()); //与输入流读取的是同一份数据，已经读完
+        } finally {
+            body.release();
+        }
+    }
+
+    @Test
+    public void releasingRetainedContentFreesEveryHttpContent() throws IOException {
+        HttpRequestInputStream in = newStream(1000);
+        ByteBuf[] buffers = {bytes(1, 2), bytes(3), bytes(4, 5)};
+        in.addContent(new DefaultHttpContent(buffers[0]));
+        in.addContent(new DefaultHttpContent(buffers[1]));
+        in.addContent(new DefaultLastHttpContent(buffers[2]));
+        ByteBuf body = in.readRetainedContent();
+        assertTrue("Content was released while still referenced", buffers[0].refCnt() > 0);
+        body.release();
+        in.close(); //最后一个HttpContent由输入流持有到关闭
+        for (ByteBuf buffer : buffers) {
+            assertEquals(0, buffer.refCnt());
+        }
+    }
+
+    @Test
+    public void retainedContentStartsAfterWhatWasAlreadyRead() throws IOException {
+        HttpRequestInputStream in = newStream(1000);
+        in.addContent(new DefaultHttpContent(bytes(1, 2, 3, 4)));
+        in.addContent(new DefaultLastHttpContent(bytes(5, 6)));
+        assertEquals(1, in.read());
+        assertEquals(2, in.read());
+        ByteBuf body = in.readRetainedContent();
+        try {
+            assertArrayEquals(new byte[]{3, 4, 5, 6}, ByteBufUtil.getBytes(body));
+        } finally {
+            body.release();
+        }
+    }
+
+    @Test
+    public void retainedContentIsReleasedWhenReadTimesOut() throws IOException {
+        HttpRequestInputStream in = newStream(50);
+        ByteBuf buffer = bytes(1, 2, 3);
+        in.addContent(new DefaultHttpContent(buffer)); //没有LastHttpContent，读取会超时
+        try {
+            in.readRetainedContent();
+            fail();
+        } catch (SocketTimeoutException expected) {
+        }
+        in.close();
+        assertEquals("Partial content leaked", 0, buffer.refCnt());
+    }
+
+    @Test
+    public void retainedContentIsReleasedWhenStreamIsClosed() throws Exception {
+        HttpRequestInputStream in = newStream(5000);
+        ByteBuf buffer = bytes(1, 2, 3);
+        in.addContent(new DefaultHttpContent(buffer));
+        ExecutorService reader = Executors.newSingleThreadExecutor();
+        try {
+            Future<ByteBuf> result = reader.submit(() -> in.readRetainedContent());
+            Thread.sleep(50);
+            in.close(); //连接断开
+            try {
+                result.get(2, TimeUnit.SECONDS);
+                fail();
+            } catch (java.util.concurrent.ExecutionException e) {
+                assertTrue(e.getCause() instanceof IOException || e.getCause() instanceof IllegalStateException);
+            }
+            assertEquals("Partial content leaked", 0, buffer.refCnt());
+        } finally {
+            reader.shutdownNow();
+        }
+    }
+
+    @Test
+    public void retainedContentFailsAboveMaxBytes() throws IOException {
+        HttpRequestInputStream in = newStream(1000);
+        ByteBuf[] buffers = {bytes(1, 2), bytes(3, 4)};
+        in.addContent(new DefaultHttpContent(buffers[0]));
+        in.addContent(new DefaultLastHttpContent(buffers[1]));
+        try {
+            in.readRetainedContent(3);
+            fail();
+        } catch (IOException expected) {
+        }
+        in.close();
+        for (ByteBuf buffer : buffers) {
+            assertEquals(0, buffer.refCnt());
+        }
+    }
+
+    /**
+     * 记录回调顺序，onDataAvailable里读到isReady()返回false为止
+     */
+    private static class RecordingReadListener implements ReadListener {
+        private final HttpRequestInputStream in;
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        private final List<String> events = new ArrayList<>();
+        private Throwable error;
+
+        RecordingReadListener(HttpRequestInputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public void onDataAvailable() throws IOException {
+            events.add("onDataAvailable");
+            byte[] buffer = new byte[16];
+            while (in.isReady()) {
+                int n = in.read(buffer);
+                if (n == -1) {
+                    break;
+                }
+                body.write(buffer, 0, n);
+            }
+        }
+
+        @Override
+        public void onAllDataRead() {
+            events.add("onAllDataRead");
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            events.add("onError");
+            error = t;
+        }
+    }
+
+    @Test
+    public void readListenerIsNotifiedAsContentArrives() {
+        HttpRequestInputStream in = newStream(1000);
+        RecordingReadListener listener = new RecordingReadListener(in);
+        in.setReadListener(listener);
+        assertTrue("Notified before any content arrived", listener.events.isEmpty());
+
+        in.addContent(new DefaultHttpContent(Unpooled.wrappedBuffer(new byte[]{1, 2})));
+        assertEquals(1, listener.events.size());
+        assertFalse(in.isReady()); //已经读完，等下一个HttpContent
+
+        in.addContent(new DefaultLastHttpContent(Unpooled.wrappedBuffer(new byte[]{3})));
+        assertEquals(Arrays.asList("onDataAvailable", "onDataAvailable", "onAllDataRead"), listener.events);
+        assertArrayEquals(new byte[]{1, 2, 3}, listener.body.toByteArray());
+        assertNull(listener.error);
+    }
+
+    @Test
+    public void readListenerIsNotifiedOfAllDataReadForEmptyBody() {
+        HttpRequestInputStream in = newStream(1000);
+        in.addContent(new DefaultLastHttpContent());
+        RecordingReadListener listener = new RecordingReadListener(in);
+        in.setReadListener(listener);
+        assertEquals(Collections.singletonList("onAllDataRead"), listener.events);
+    }
+
+    @Test
+    public void readListenerIsNotifiedOfErrorWhenConnectionClosesMidBody() throws IOException {
+        HttpRequestInputStream in = newStream(1000);
+        RecordingReadListener listener = new RecordingReadListener(in);
+        in.setReadListener(listener);
+        in.addContent(content(10));
+        channel.close();
+        in.close(); //连接断开时ServletContentHandler关闭输入流
+        assertEquals(Arrays.asList("onDataAvailable", "onError"), listener.events);
+        assertTrue(listener.error instanceof IOException);
+    }
+}
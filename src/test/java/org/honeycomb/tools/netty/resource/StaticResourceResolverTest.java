@@ -0,0 +1,154 @@
+package org.honeycomb.tools.netty.resource;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * User: luluful
+ * Date: 10/18/26
+ */
+public class StaticResourceResolverTest {
+    private static final byte[] SCRIPT = "console.log('static')".getBytes(StandardCharsets.UTF_8);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Set<Thread> getResourceThreads = ConcurrentHashMap.newKeySet(); //调用过ClassLoader.getResource的线程
+    private StaticResourceResolver resolver;
+
+    @After
+    public void tearDown() {
+        if (resolver != null) {
+            resolver.close();
+        }
+    }
+
+    private File newJar() throws IOException {
+        File jar = folder.newFile("static.jar");
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+            out.putNextEntry(new JarEntry("static/"));
+            out.putNextEntry(new JarEntry("static/js/"));
+            out.putNextEntry(new JarEntry("static/js/app.js"));
+            out.write(SCRIPT);
+            out.putNextEntry(new JarEntry("static/big.bin"));
+            out.write(new byte[4096]);
+            out.putNextEntry(new JarEntry("other/secret.txt"));
+            out.write(SCRIPT);
+        }
+        return jar;
+    }
+
+    private File newDirectory() throws IOException {
+        File root = folder.newFolder("classes");
+        File js = new File(root, "static/js");
+        assertTrue(js.mkdirs());
+        Files.write(new File(js, "app.js").toPath(), SCRIPT);
+        Files.write(new File(root, "static/index.html").toPath(), SCRIPT);
+        return root;
+    }
+
+    private StaticResourceResolver newResolver(File... classpath) throws IOException {
+        URL[] urls = new URL[classpath.length];
+        for (int i = 0; i < classpath.length; i++) {
+            urls[i] = classpath[i].toURI().toURL();
+        }
+        ClassLoader classLoader = new URLClassLoader(urls, null) {
+            @Override
+            public URL getResource(String name) {
+                getResourceThreads.add(Thread.currentThread());
+                return super.getResource(name);
+            }
+        };
+        resolver = new StaticResourceResolver(classLoader, Collections.singletonList("classpath:/static/"), 1024, 1024 * 1024);
+        return resolver;
+    }
+
+    private StaticResource awaitResolved(String path) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        StaticResource resource;
+        while ((resource = resolver.resolve(path)) == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        return resource;
+    }
+
+    @Test
+    public void loadsJarResourcesInTheBackground() throws Exception {
+        newResolver(newJar());
+        assertNull("first request falls through to the servlet", resolver.resolve("/js/app.js"));
+        StaticResource resource = awaitResolved("/js/app.js");
+        assertNotNull(resource);
+        assertFalse(resource.isFile());
+        assertEquals("app.js", resource.getName());
+        assertEquals(SCRIPT.length, resource.getLength());
+        byte[] content = new byte[SCRIPT.length];
+        resource.getContent().getBytes(0, content);
+        assertEquals(new String(SCRIPT, StandardCharsets.UTF_8), new String(content, StandardCharsets.UTF_8));
+        assertFalse("ClassLoader.getResource must not run on the calling thread",
+                getResourceThreads.contains(Thread.currentThread()));
+    }
+
+    @Test
+    public void missingAndOversizedJarResourcesAreNeverServed() throws Exception {
+        newResolver(newJar());
+        assertNull(resolver.resolve("/missing.js"));
+        assertNull(resolver.resolve("/big.bin"));
+        assertNull(resolver.resolve("/js")); //目录
+        assertNull(resolver.resolve("/../other/secret.txt"));
+        Thread.sleep(200);
+        assertNull(resolver.resolve("/big.bin"));
+        assertFalse(getResourceThreads.contains(Thread.currentThread()));
+    }
+
+    @Test
+    public void servesExplodedClasspathDirectoriesAsFiles() throws Exception {
+        newResolver(newDirectory());
+        StaticResource resource = resolver.resolve("/index.html");
+        assertNotNull(resource);
+        assertTrue(resource.isFile());
+        assertEquals(SCRIPT.length, resource.getLength());
+        assertNull(resolver.resolve("/js/"));
+        assertNull(resolver.resolve("/js/./app.js"));
+    }
+
+    @Test
+    public void earlierClasspathRootWins() throws Exception {
+        newResolver(newDirectory(), newJar());
+        StaticResource resource = resolver.resolve("/js/app.js");
+        assertNotNull(resource);
+        assertTrue(resource.isFile());
+        assertNotNull(awaitResolved("/js/app.js"));
+        assertTrue(resolver.resolve("/js/app.js").isFile());
+    }
+
+    @Test
+    public void fileLocationsAreResolvedFromDisk() throws Exception {
+        File root = newDirectory();
+        resolver = new StaticResourceResolver(getClass().getClassLoader(),
+                Arrays.asList("file:" + new File(root, "static").getPath(), "classpath:/not-on-classpath/"), 1024, 1024 * 1024);
+        assertTrue(resolver.resolve("/js/app.js").isFile());
+        assertNull(resolver.resolve("/js/missing.js"));
+    }
+}
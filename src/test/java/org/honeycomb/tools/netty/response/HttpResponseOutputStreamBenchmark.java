@@ -0,0 +1,112 @@
+package org.honeycomb.tools.netty.response;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.ReferenceCountUtil;
+import org.honeycomb.tools.netty.core.EmbeddedServletChannel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每个请求写响应体的耗时和堆内存分配，看gc.alloc.rate.norm一列（每个请求分配的字节数）
+ * <p>
+ * 请求经过EmbeddedChannel上的Servlet管道，Servlet在IO线程上同步执行，按1KB分多次写出响应体。
+ * 在IDE中运行main方法，或者mvn test-compile后用test classpath运行，加上-prof gc
+ * <p>
+ * User: luluful
+ * Date: 10/18/26
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HttpResponseOutputStreamBenchmark {
+    private static final byte[] PIECE = new byte[1024];
+
+    @Param({"0", "1024", "16384"})
+    private int bodySize;
+
+    private EmbeddedChannel channel;
+    private String sessionCookie; //复用同一个Session，每个请求不再新建Session
+
+    @Setup
+    public void setUp() {
+        channel = new EmbeddedServletChannel().addServlet("body", new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                OutputStream out = resp.getOutputStream();
+                for (int remaining = bodySize; remaining > 0; remaining -= PIECE.length) {
+                    out.write(PIECE, 0, Math.min(remaining, PIECE.length));
+                }
+            }
+        }, "/").open(Runnable::run);
+        channel.writeInbound(newRequest());
+        HttpResponse response = channel.readOutbound();
+        sessionCookie = response.headers().get(HttpHeaderNames.SET_COOKIE).split(";")[0];
+        ReferenceCountUtil.release(response);
+        drainOutbound();
+    }
+
+    private FullHttpRequest newRequest() {
+        FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/body", Unpooled.EMPTY_BUFFER);
+        if (sessionCookie != null) {
+            request.headers().set(HttpHeaderNames.COOKIE, sessionCookie);
+        }
+        return request;
+    }
+
+    private int drainOutbound() {
+        int messages = 0;
+        Object message;
+        while ((message = channel.readOutbound()) != null) {
+            ReferenceCountUtil.release(message);
+            messages++;
+        }
+        return messages;
+    }
+
+    @TearDown
+    public void tearDown() {
+        channel.finishAndReleaseAll();
+    }
+
+    @Benchmark
+    public int writeResponse() {
+        channel.writeInbound(newRequest());
+        return drainOutbound();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(HttpResponseOutputStreamBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class).build()).run();
+    }
+}
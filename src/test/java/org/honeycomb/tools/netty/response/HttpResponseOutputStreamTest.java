@@ -0,0 +1,219 @@
+package org.honeycomb.tools.netty.response;
+
+import org.honeycomb.tools.netty.core.HttpTestClient;
+import org.honeycomb.tools.netty.core.NettyTestServer;
+import org.junit.After;
+import org.junit.Test;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * User: luluful
+ * Date: 10/18/26
+ */
+public class HttpResponseOutputStreamTest {
+    private static final int BODY_SIZE = 4 * 1024 * 1024; //远大于默认64K的出站高水位
+
+    private NettyTestServer server;
+
+    @After
+    public void tearDown() {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    private NettyTestServer start(HttpServlet servlet) {
+        server = new NettyTestServer();
+        server.getProperties().setWriteTimeout(Duration.ofSeconds(3));
+        return server.addServlet("test", servlet, "/*").start();
+    }
+
+    @Test
+    public void writesResponseLargerThanHighWaterMark() throws Exception {
+        start(new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                resp.setContentLength(BODY_SIZE);
+                writeBody(resp.getOutputStream(), 64 * 1024);
+            }
+        });
+        try (HttpTestClient client = server.connect()) {
+            long start = System.nanoTime();
+            HttpTestClient.Response response = client.get("/large");
+            assertEquals(200, response.getStatus());
+            assertBody(response.getBody());
+            assertTrue("Response stalled until the write timeout",
+                    System.nanoTime() - start < TimeUnit.SECONDS.toNanos(3));
+        }
+    }
+
+    @Test
+    public void streamsChunkedResponseOfUnknownLength() throws Exception {
+        start(new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                writeBody(resp.getOutputStream(), 1000); //小于缓冲区，经过缓冲区写出
+            }
+        });
+        try (HttpTestClient client = server.connect()) {
+            long start = System.nanoTime();
+            HttpTestClient.Response response = client.get("/export");
+            assertEquals("chunked", response.getHeader("Transfer-Encoding"));
+            assertNull(response.getHeader("Content-Length"));
+            assertBody(response.getBody());
+            assertTrue("Response stalled until the write timeout",
+                    System.nanoTime() - start < TimeUnit.SECONDS.toNanos(3));
+            assertEquals(200, client.get("/next").getStatus()); //chunked响应之后连接仍然可以复用
+        }
+    }
+
+    @Test
+    public void streamsHttp10ResponseUntilClose() throws Exception {
+        start(new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                writeBody(resp.getOutputStream(), 64 * 1024);
+            }
+        });
+        try (HttpTestClient client = server.connect()) {
+            client.send("GET /export HTTP/1.0\r\n\r\n");
+            HttpTestClient.Response response = client.readResponse();
+            assertNull(response.getHeader("Transfer-Encoding"));
+            assertNull(response.getHeader("Content-Length"));
+            assertBody(response.getBody()); //HTTP/1.0没有chunked，由关闭连接标识响应结束
+        }
+    }
+
+    @Test
+    public void flushSendsBufferedContentImmediately() throws Exception {
+        CountDownLatch received = new CountDownLatch(1);
+        start(new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                ServletOutputStream out = resp.getOutputStream();
+                out.write("first".getBytes());
+                out.flush();
+                try {
+                    received.await(5, TimeUnit.SECONDS); //客户端收到第一段之后才结束响应
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                out.write("second".getBytes());
+            }
+        });
+        try (HttpTestClient client = server.connect()) {
+            client.send("GET /flush HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            byte[] first = new byte[1];
+            client.getSocket().setSoTimeout(3000);
+            assertEquals('H', client.getSocket().getInputStream().read(first) > 0 ? first[0] : -1);
+            received.countDown();
+        }
+    }
+
+    /**
+     * 非阻塞写出BODY_SIZE字节：isReady()返回false时停下，等onWritePossible再继续
+     */
+    private static HttpServlet nonBlockingWriter(CountDownLatch notReady, AtomicInteger writePossibleCalls) {
+        return new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                AsyncContext async = req.startAsync();
+                resp.setContentLength(BODY_SIZE);
+                ServletOutputStream out = resp.getOutputStream();
+                out.setWriteListener(new WriteListener() {
+                    private final byte[] chunk = new byte[8 * 1024];
+                    private int written;
+
+                    @Override
+                    public void onWritePossible() throws IOException {
+                        writePossibleCalls.incrementAndGet();
+                        while (out.isReady()) {
+                            if (written == BODY_SIZE) {
+                                async.complete();
+                                return;
+                            }
+                            int length = Math.min(chunk.length, BODY_SIZE - written);
+                            for (int i = 0; i < length; i++) {
+                                chunk[i] = (byte) (written + i);
+                            }
+                            out.write(chunk, 0, length);
+                            written += length;
+                        }
+                        notReady.countDown();
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                        async.complete();
+                    }
+                });
+            }
+        };
+    }
+
+    @Test
+    public void writeListenerResumesAfterTheChannelDrains() throws Exception {
+        CountDownLatch notReady = new CountDownLatch(1);
+        AtomicInteger writePossibleCalls = new AtomicInteger();
+        start(nonBlockingWriter(notReady, writePossibleCalls));
+        try (HttpTestClient client = server.connect()) {
+            client.getSocket().setSoTimeout(5000);
+            client.send("GET /async HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            assertTrue("isReady() never returned false above the high water mark", notReady.await(5, TimeUnit.SECONDS));
+            HttpTestClient.Response response = client.readResponse();
+            assertEquals(200, response.getStatus());
+            assertBody(response.getBody());
+            assertTrue(writePossibleCalls.get() > 1);
+        }
+    }
+
+    /**
+     * 同一连接上流水线的两个非阻塞响应都在等待可写，恢复可写后两个都要收到onWritePossible
+     */
+    @Test
+    public void pipelinedWriteListenersAreAllNotified() throws Exception {
+        CountDownLatch notReady = new CountDownLatch(2);
+        start(nonBlockingWriter(notReady, new AtomicInteger()));
+        try (HttpTestClient client = server.connect()) {
+            client.getSocket().setSoTimeout(5000);
+            client.send("GET /first HTTP/1.1\r\nHost: localhost\r\n\r\nGET /second HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            assertTrue("both responses wait for the channel", notReady.await(5, TimeUnit.SECONDS));
+            assertBody(client.readResponse().getBody());
+            assertBody(client.readResponse().getBody());
+        }
+    }
+
+    static void writeBody(ServletOutputStream out, int chunkSize) throws IOException {
+        byte[] chunk = new byte[chunkSize];
+        for (int written = 0; written < BODY_SIZE; written += chunkSize) {
+            for (int i = 0; i < chunkSize; i++) {
+                chunk[i] = (byte) (written + i);
+            }
+            out.write(chunk, 0, Math.min(chunkSize, BODY_SIZE - written));
+        }
+    }
+
+    static void assertBody(byte[] body) {
+        assertEquals(BODY_SIZE, body.length);
+        for (int i = 0; i < body.length; i++) {
+            if (body[i] != (byte) i) {
+                throw new AssertionError("Unexpected byte at " + i);
+            }
+        }
+    }
+}
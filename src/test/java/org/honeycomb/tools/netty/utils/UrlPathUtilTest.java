@@ -0,0 +1,76 @@
+package org.honeycomb.tools.netty.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * User: luluful
+ * Date: 10/18/26
+ */
+public class UrlPathUtilTest {
+
+    @Test
+    public void returnsNormalizedPathsUnchanged() {
+        String path = "/api/v1/users.json";
+        assertSame(path, UrlPathUtil.normalize(path));
+        assertSame("/", UrlPathUtil.normalize("/"));
+        assertSame("/a/", UrlPathUtil.normalize("/a/"));
+    }
+
+    @Test
+    public void collapsesRepeatedSlashes() {
+        assertEquals("/a/b", UrlPathUtil.normalize("//a///b"));
+        assertEquals("/a/b/", UrlPathUtil.normalize("/a/b//"));
+        assertEquals("/", UrlPathUtil.normalize("//"));
+    }
+
+    @Test
+    public void removesDotSegments() {
+        assertEquals("/a/b", UrlPathUtil.normalize("/a/./b"));
+        assertEquals("/b", UrlPathUtil.normalize("/a/../b"));
+        assertEquals("/a/", UrlPathUtil.normalize("/a/b/.."));
+        assertEquals("/a/", UrlPathUtil.normalize("/a/."));
+        assertEquals("/", UrlPathUtil.normalize("/a/.."));
+        assertEquals("/.hidden/..a", UrlPathUtil.normalize("/.hidden/..a"));
+    }
+
+    @Test
+    public void rejectsPathsAboveRoot() {
+        assertNull(UrlPathUtil.normalize("/.."));
+        assertNull(UrlPathUtil.normalize("/a/../../b"));
+        assertNull(UrlPathUtil.normalize("/%2e%2e/etc/passwd"));
+    }
+
+    @Test
+    public void decodesPercentEncodingAsUtf8() {
+        assertEquals("/a b", UrlPathUtil.normalize("/a%20b"));
+        assertEquals("/a+b", UrlPathUtil.normalize("/a+b"));
+        assertEquals("/中文", UrlPathUtil.normalize("/%E4%B8%AD%e6%96%87"));
+        assertEquals("/b", UrlPathUtil.normalize("/a/%2E%2E/b")); //先解码再去掉点号路径段
+    }
+
+    @Test
+    public void rejectsInvalidEncoding() {
+        assertNull(UrlPathUtil.normalize("/a%2"));
+        assertNull(UrlPathUtil.normalize("/a%zz"));
+        assertNull(UrlPathUtil.normalize("/a%00b"));
+        assertNull(UrlPathUtil.normalize("/%E4%B8")); //不完整的UTF-8
+    }
+
+    @Test
+    public void rejectsEncodedSlashes() {
+        assertNull(UrlPathUtil.normalize("/a%2Fb"));
+        assertNull(UrlPathUtil.normalize("/public%2F..%2Fadmin")); //否则会变成/admin
+        assertNull(UrlPathUtil.normalize("/static/..%2f..%2fetc/passwd")); //解码后..会越过/static
+        assertNull(UrlPathUtil.normalize("/static/%2e%2e%2fWEB-INF/web.xml"));
+    }
+
+    @Test
+    public void rejectsEncodedBackslashes() {
+        assertNull(UrlPathUtil.normalize("/a%5Cb"));
+        assertNull(UrlPathUtil.normalize("/static/..%5c..%5cetc/passwd"));
+    }
+}
@@ -0,0 +1,106 @@
+package org.honeycomb.tools.netty.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.servlet.Servlet;
+import javax.servlet.http.HttpServlet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 成千上万个url-pattern时各种匹配方式的路由耗时，四分之一精确匹配、四分之一路径匹配、其余为扩展名匹配，另有一个默认Servlet
+ * <p>
+ * 在IDE中运行main方法，或者mvn test-compile后用test classpath运行
+ * <p>
+ * User: luluful
+ * Date: 10/18/26
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UrlPatternRouterBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    private int patterns;
+
+    private UrlPatternRouter router;
+    private String[] exactPaths;
+    private String[] pathPaths;
+    private String[] extensionPaths;
+    private String[] defaultPaths;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        Servlet servlet = new HttpServlet() {
+        };
+        List<ServletRoute> routes = new ArrayList<>();
+        int groups = patterns / 4;
+        exactPaths = new String[groups];
+        pathPaths = new String[groups];
+        extensionPaths = new String[groups];
+        defaultPaths = new String[groups];
+        for (int i = 0; i < groups; i++) {
+            routes.add(ServletRoute.of("/api/v1/service" + i + "/status", "exact" + i, servlet));
+            routes.add(ServletRoute.of("/api/v1/service" + i + "/*", "path" + i, servlet));
+            routes.add(ServletRoute.of("*.ext" + i, "extension" + i, servlet));
+            routes.add(ServletRoute.of("*.alt" + i, "alternative" + i, servlet));
+            exactPaths[i] = "/api/v1/service" + i + "/status";
+            pathPaths[i] = "/api/v1/service" + i + "/users/42/orders";
+            extensionPaths[i] = "/static/assets/v" + i + "/file.ext" + i;
+            defaultPaths[i] = "/pages/section" + i + "/index";
+        }
+        routes.add(ServletRoute.of("/", "default", servlet));
+        router = new UrlPatternRouter(routes);
+    }
+
+    private int next() {
+        int i = index + 1;
+        if (i == exactPaths.length) {
+            i = 0;
+        }
+        index = i;
+        return i;
+    }
+
+    @Benchmark
+    public ServletRoute exact() {
+        return router.route(exactPaths[next()]);
+    }
+
+    @Benchmark
+    public ServletRoute path() {
+        return router.route(pathPaths[next()]);
+    }
+
+    @Benchmark
+    public ServletRoute extension() {
+        return router.route(extensionPaths[next()]);
+    }
+
+    @Benchmark
+    public ServletRoute defaultServlet() {
+        return router.route(defaultPaths[next()]);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(UrlPatternRouterBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,149 @@
+package org.honeycomb.tools.netty.utils;
+
+import org.junit.Test;
+
+import javax.servlet.Servlet;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * User: luluful
+ * Date: 10/18/26
+ */
+public class UrlPatternRouterTest {
+    private static final Servlet SERVLET = new HttpServlet() {
+    };
+
+    @Test
+    public void exactBeatsPathBeatsExtensionBeatsDefault() {
+        UrlPatternRouter router = router("/", "*.do", "/app/*", "/app/login.do");
+        assertEquals("/app/login.do", pattern(router, "/app/login.do"));
+        assertEquals("/app/*", pattern(router, "/app/logout.do"));
+        assertEquals("*.do", pattern(router, "/other/logout.do"));
+        assertEquals("/", pattern(router, "/other/logout"));
+    }
+
+    @Test
+    public void longestPathMatchWins() {
+        UrlPatternRouter router = router("/*", "/a/*", "/a/b/*");
+        assertEquals("/a/b/*", pattern(router, "/a/b/c"));
+        assertEquals("/a/b/*", pattern(router, "/a/b"));
+        assertEquals("/a/*", pattern(router, "/a/bc"));
+        assertEquals("/a/*", pattern(router, "/a"));
+        assertEquals("/*", pattern(router, "/b"));
+        assertEquals("/*", pattern(router, "/"));
+    }
+
+    @Test
+    public void pathPatternMatchesItsOwnPrefixButNotLongerSegments() {
+        UrlPatternRouter router = router("/foo/*");
+        assertEquals("/foo/*", pattern(router, "/foo"));
+        assertEquals("/foo/*", pattern(router, "/foo/"));
+        assertEquals("/foo/*", pattern(router, "/foo/bar"));
+        assertNull(router.route("/foobar"));
+        assertNull(router.route("/fo"));
+    }
+
+    @Test
+    public void trailingSlashIsADifferentExactPath() {
+        UrlPatternRouter router = router("/a", "/b/");
+        assertEquals("/a", pattern(router, "/a"));
+        assertNull(router.route("/a/"));
+        assertEquals("/b/", pattern(router, "/b/"));
+        assertNull(router.route("/b"));
+    }
+
+    @Test
+    public void emptyPatternMatchesOnlyTheContextRoot() {
+        UrlPatternRouter router = router("", "/");
+        assertEquals("", pattern(router, "/"));
+        assertEquals("/", pattern(router, "/index.html"));
+    }
+
+    @Test
+    public void extensionIsTakenFromTheLastSegmentOnly() {
+        UrlPatternRouter router = router("*.jsp", "*.gz");
+        assertEquals("*.jsp", pattern(router, "/a.b/c.jsp"));
+        assertEquals("*.gz", pattern(router, "/app.js/bundle.tar.gz"));
+        assertNull(router.route("/app.jsp/bundle"));
+        assertNull(router.route("/noextension"));
+    }
+
+    @Test
+    public void emptyRouterMatchesNothing() {
+        UrlPatternRouter router = new UrlPatternRouter(Collections.emptyList());
+        assertNull(router.route("/"));
+        assertNull(router.route("/a/b.c"));
+    }
+
+    @Test
+    public void servletPathAndPathInfoFollowMatchType() {
+        UrlPatternRouter router = router("/", "*.do", "/api/*", "/exact");
+        ServletRoute path = router.route("/api/users/1");
+        assertEquals("/api", path.getServletPath("/api/users/1"));
+        assertEquals("/users/1", path.getPathInfo("/api/users/1"));
+        assertNull(path.getPathInfo("/api"));
+
+        ServletRoute exact = router.route("/exact");
+        assertEquals("/exact", exact.getServletPath("/exact"));
+        assertNull(exact.getPathInfo("/exact"));
+
+        ServletRoute extension = router.route("/x/y.do");
+        assertEquals("/x/y.do", extension.getServletPath("/x/y.do"));
+        assertNull(extension.getPathInfo("/x/y.do"));
+
+        ServletRoute defaultRoute = router.route("/other");
+        assertEquals("/other", defaultRoute.getServletPath("/other"));
+        assertNull(defaultRoute.getPathInfo("/other"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsWildcardInTheMiddle() {
+        ServletRoute.of("/a/*/b", "test", SERVLET);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsPatternWithoutLeadingSlash() {
+        ServletRoute.of("a/b", "test", SERVLET);
+    }
+
+    @Test
+    public void mapperPublishesANewSnapshotOnEveryChange() throws ServletException {
+        RequestUrlPatternMapper mapper = new RequestUrlPatternMapper();
+        UrlPatternRouter before = mapper.addServlet("/a/*", SERVLET, "a");
+        UrlPatternRouter after = mapper.addServlet("/a/b", SERVLET, "b");
+        assertEquals("a", before.route("/a/b").getServletName()); //旧快照不受影响
+        assertEquals("b", after.route("/a/b").getServletName());
+        assertSame(after, mapper.getRouter());
+
+        UrlPatternRouter removed = mapper.removeServlet("/a/b");
+        assertEquals("a", removed.route("/a/b").getServletName());
+        assertSame(removed, mapper.removeServlet("/not-mapped"));
+    }
+
+    @Test(expected = ServletException.class)
+    public void mapperRejectsDuplicatePattern() throws ServletException {
+        RequestUrlPatternMapper mapper = new RequestUrlPatternMapper();
+        mapper.addServlet("/a", SERVLET, "a");
+        mapper.addServlet("/a", SERVLET, "b");
+    }
+
+    private static UrlPatternRouter router(String... patterns) {
+        List<ServletRoute> routes = new ArrayList<>();
+        for (String pattern : patterns) {
+            routes.add(ServletRoute.of(pattern, pattern, SERVLET));
+        }
+        return new UrlPatternRouter(routes);
+    }
+
+    private static String pattern(UrlPatternRouter router, String path) {
+        return router.route(path).getUrlPattern();
+    }
+}